@@ -0,0 +1,113 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static gitlet.Utils.*;
+
+/** A benchmarking class whose main program may be invoked as follows:
+ *      java gitlet.Bench NAME ARGS...
+ *  where NAME selects one of the benchmarks of ObjectBench,
+ *  HistoryBench, WorkTreeBench and ServerBench. Each benchmark builds
+ *  its own data in the current directory, which should be an empty
+ *  scratch directory, and prints its measurements on System.out. The
+ *  benchmarks are kept apart from the gitlet folder, so that they are
+ *  not part of the program, and are compiled by `make bench` against
+ *  its classes.
+ *  @author Sam Stahl
+ */
+public class Bench {
+
+    /** Runs the benchmark named by ARGS[0] with the rest of ARGS. */
+    public static void main(String... args) throws IOException {
+        if (args.length == 0) {
+            System.out.println("Usage: java gitlet.Bench NAME ARGS...");
+            return;
+        }
+        switch (args[0]) {
+        case "objects":
+            ObjectBench.objects(intArg(args, 1, 2000), intArg(args, 2, 8192));
+            break;
+        case "daemon":
+            ServerBench.daemon(intArg(args, 1, 50));
+            break;
+        case "lookup":
+            ObjectBench.lookup(intArg(args, 1, 100000), intArg(args, 2, 10000));
+            break;
+        case "api":
+            ServerBench.api(intArg(args, 1, 4), intArg(args, 2, 200));
+            break;
+        case "reset":
+            WorkTreeBench.reset(intArg(args, 1, 10000), intArg(args, 2, 3));
+            break;
+        case "status":
+            WorkTreeBench.status(intArg(args, 1, 100000),
+                                 intArg(args, 2, threads()));
+            break;
+        case "checkout":
+            WorkTreeBench.checkout(intArg(args, 1, 2000), intArg(args, 2, 3));
+            break;
+        case "merge":
+            WorkTreeBench.merge(intArg(args, 1, 1000000));
+            break;
+        case "diff":
+            WorkTreeBench.diff(intArg(args, 1, 2000),
+                               intArg(args, 2, threads()));
+            break;
+        case "codec":
+            HistoryBench.codec(intArg(args, 1, 200000));
+            break;
+        case "log":
+            HistoryBench.log(intArg(args, 1, 20000));
+            break;
+        case "ids":
+            ObjectBench.ids(intArg(args, 1, 1000000));
+            break;
+        case "contents":
+            HistoryBench.contents(intArg(args, 1, 20000), intArg(args, 2, 10));
+            break;
+        case "subdirs":
+            WorkTreeBench.subdirs(intArg(args, 1, 20000), intArg(args, 2, 10));
+            break;
+        case "hash":
+            ObjectBench.hash(intArg(args, 1, 256));
+            break;
+        default:
+            System.out.println("No benchmark with that name exists.");
+        }
+    }
+
+    /** Creates COUNT files of about SIZE bytes of source-like text in
+     *  DIR and returns them.
+     */
+    static List<File> textFiles(File dir, int count, int size) {
+        String[] words = {"int", "return", "if", "else", "for", "while",
+                          "static", "void", "String", "File", "commit",
+                          "branch", "merge", "=", "+=", "{", "}", ";"};
+        Random random = new Random(count);
+        List<File> files = new ArrayList<>();
+        for (int i = 0; i < count; i += 1) {
+            StringBuilder text = new StringBuilder();
+            while (text.length() < size) {
+                for (int w = random.nextInt(12); w >= 0; w -= 1) {
+                    text.append(words[random.nextInt(words.length)])
+                        .append(' ');
+                }
+                text.append(random.nextInt(1000)).append('\n');
+            }
+            File f = join(dir, "file" + i + ".txt");
+            writeContents(f, text.toString());
+            files.add(f);
+        }
+        return files;
+    }
+
+    /** Returns ARGS[K] as an integer, or DEFAULTVALUE if it is absent. */
+    static int intArg(String[] args, int k, int defaultValue) {
+        return args.length > k ? Integer.parseInt(args[k]) : defaultValue;
+    }
+
+}
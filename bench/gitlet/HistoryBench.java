@@ -0,0 +1,252 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.Serializable;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static gitlet.Utils.*;
+
+/** Benchmarks of reading history: walking it with log, global-log and
+ *  find, encoding and decoding commits, and holding commits' contents.
+ *  Run through Bench.
+ *  @author Sam Stahl
+ */
+class HistoryBench {
+
+    /** Measures the time taken and the bytes allocated by log,
+     *  global-log and find over a history of COUNT commits, each run
+     *  first in a fresh context, as on the command line, and then again
+     *  in the same one, as in the daemon, with the commits loose and
+     *  then packed.
+     */
+    static void log(int count) throws IOException {
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        Main.main("init");
+        writeContents(join(cwd(), "wug.txt"), "wug\n");
+        Main.run("add", "wug.txt");
+        Main.run("commit", "wug");
+        for (int i = 0; i < count; i += 1) {
+            new Commit(getHeadSha1(), "commit number " + i,
+                       "master").commit(true);
+        }
+        com.sun.management.ThreadMXBean bean =
+            (com.sun.management.ThreadMXBean)
+            ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        out.printf("%-7s %-12s %-6s %10s %14s%n", "commits", "command",
+                   "run", "ms", "bytes/commit");
+        for (String objects : new String[] {"loose", "packed"}) {
+            if (objects.equals("packed")) {
+                Main.run("repack");
+            }
+            for (String[] command : new String[][] {
+                    {"log"}, {"global-log"}, {"find", "commit number 7"}}) {
+                Repository.use(cwd());
+                for (String run : new String[] {"cold", "warm"}) {
+                    long bytes = bean.getThreadAllocatedBytes(thread);
+                    long start = System.nanoTime();
+                    Main.run(command);
+                    long time = System.nanoTime() - start;
+                    bytes = bean.getThreadAllocatedBytes(thread) - bytes;
+                    out.printf("%-7s %-12s %-6s %10.1f %14d%n", objects,
+                               command[0], run, time / 1e6, bytes / count);
+                }
+            }
+        }
+        System.setOut(out);
+    }
+
+    /** Compares encoding and decoding a merge commit COUNT times each
+     *  in the binary format with doing so by Java serialization, as
+     *  commits used to be stored, and the sizes of the two.
+     */
+    static void codec(int count) throws IOException {
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        Main.main("init");
+        writeContents(join(cwd(), "wug.txt"), "wug\n");
+        Main.run("add", "wug.txt");
+        Main.run("commit", "a commit message of a typical length");
+        Main.run("branch", "other");
+        writeContents(join(cwd(), "notwug.txt"), "notwug\n");
+        Main.run("add", "notwug.txt");
+        Main.run("commit", "ours");
+        Main.run("checkout", "other");
+        Main.run("rm", "wug.txt");
+        Main.run("commit", "theirs");
+        Main.run("checkout", "master");
+        Main.run("merge", "other");
+        System.setOut(out);
+        Commit c = Repository.current().head();
+        SerializedCommit old = new SerializedCommit(c);
+        byte[] java = serialize(old), binary = c.encode();
+        out.printf("%-8s %8s %12s %12s%n", "format", "bytes", "encode ns",
+                   "decode ns");
+        for (int round = 0; round < 2; round += 1) {
+            long start = System.nanoTime();
+            for (int i = 0; i < count; i += 1) {
+                java = serialize(new SerializedCommit(c));
+            }
+            long encode = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int i = 0; i < count; i += 1) {
+                deserialize(java, SerializedCommit.class);
+            }
+            long decode = System.nanoTime() - start;
+            out.printf("%-8s %8d %12.0f %12.0f%n", "java", java.length,
+                       (double) encode / count, (double) decode / count);
+            start = System.nanoTime();
+            for (int i = 0; i < count; i += 1) {
+                binary = c.encode();
+            }
+            encode = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int i = 0; i < count; i += 1) {
+                Commit.decode(binary);
+            }
+            decode = System.nanoTime() - start;
+            out.printf("%-8s %8d %12.0f %12.0f%n", "binary", binary.length,
+                       (double) encode / count, (double) decode / count);
+        }
+    }
+
+    /** Compares the heap held by the contents of COMMITS commits of COUNT
+     *  files each, which differ in one file apiece, and the time taken to
+     *  look up every file of one of them, once warmed up, as maps from
+     *  absolute Files to hex IDs, as commits used to keep them, and as
+     *  PathTables.
+     */
+    static void contents(int count, int commits) throws IOException {
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        Main.main("init");
+        List<File> files = Bench.textFiles(cwd(), count, 16);
+        Repository.current().stage().addToStage(files);
+        Main.run("commit", "base");
+        for (int i = 1; i < commits; i += 1) {
+            writeContents(files.get(i), "changed " + i);
+            Main.run("add", files.get(i).getName());
+            Main.run("commit", "change " + i);
+        }
+        System.setOut(out);
+        List<String> ids = new ArrayList<>();
+        for (Commit c : Repository.current().log()) {
+            if (c.size() == count) {
+                ids.add(c.id());
+            }
+        }
+        out.printf("%-10s %14s %12s%n", "contents", "bytes/file",
+                   "lookup ns");
+        for (String kind : new String[] {"HashMap", "PathTable"}) {
+            Repository.use(cwd());
+            List<Map<File, String>> maps = new ArrayList<>();
+            long before = usedHeap();
+            for (String id : ids) {
+                if (kind.equals("PathTable")) {
+                    maps.add(getCommitByID(id).getContents());
+                } else {
+                    Map<File, String> map = new HashMap<>();
+                    for (Map.Entry<String, String> e
+                             : Tree.files(getCommitByID(id).treeID())
+                             .entrySet()) {
+                        map.put(join(cwd(), e.getKey()),
+                                new String(e.getValue()));
+                    }
+                    maps.add(map);
+                }
+            }
+            long held = usedHeap() - before;
+            long start = 0;
+            int found = 0;
+            for (int round = 0; round < LOOKUP_ROUNDS; round += 1) {
+                start = System.nanoTime();
+                found = 0;
+                for (File f : files) {
+                    found += maps.get(0).containsKey(f) ? 1 : 0;
+                }
+            }
+            long time = System.nanoTime() - start;
+            out.printf("%-10s %14d %12.0f%n", kind,
+                       held / ((long) count * maps.size()),
+                       (double) time / found);
+        }
+    }
+
+    /** The number of times contents looks up every file, timing the
+     *  last.
+     */
+    private static final int LOOKUP_ROUNDS = 20;
+
+    /** Returns the bytes of heap in use after collecting garbage. */
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i += 1) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /** A commit in the form the first gitlet release serialized it, with
+     *  its files in a map and the files its merge deleted as Files.
+     */
+    private static class SerializedCommit implements Serializable {
+
+        /** The serialized form of commit C. */
+        SerializedCommit(Commit c) {
+            _hasConflict = c.hasConflict();
+            _parent = c.parentID();
+            _mergeParent = c.mergeParentID();
+            _contents = new HashMap<>(c.getContents());
+            _delFromMerge = new ArrayList<>();
+            Commit parent = c.parent();
+            for (File f : parent == null ? List.<File>of()
+                     : parent.getContents().keySet()) {
+                if (c.toBeRemoved(f)) {
+                    _delFromMerge.add(f);
+                }
+            }
+            _exceptions = new ArrayList<>();
+            _message = c.message();
+            _branch = c.branch();
+            _date = new Date(c.time());
+        }
+
+        /** True if the commit had conflicts. */
+        private boolean _hasConflict;
+
+        /** The commit's parent's SHA-1 ID. */
+        private String _parent;
+
+        /** The commit's merge parent's SHA-1 ID. */
+        private String _mergeParent;
+
+        /** The commit's files and their blobs. */
+        private HashMap<File, String> _contents;
+
+        /** The files left out of the commit by a merge. */
+        private ArrayList<File> _exceptions;
+
+        /** The files deleted by the commit's merge. */
+        private ArrayList<File> _delFromMerge;
+
+        /** The commit's message. */
+        private String _message;
+
+        /** The commit's branch. */
+        private String _branch;
+
+        /** The commit's date. */
+        private Date _date;
+
+    }
+
+}
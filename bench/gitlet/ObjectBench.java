@@ -0,0 +1,306 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Formatter;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static gitlet.Utils.*;
+
+/** Benchmarks of the object store: storing and checking out blobs,
+ *  hashing large files, formatting and indexing IDs, and looking up
+ *  loose objects in flat and sharded folders. Run through Bench.
+ *  @author Sam Stahl
+ */
+class ObjectBench {
+
+    /** Compares the disk footprint and checkout time of COUNT text files
+     *  of roughly SIZE bytes each when stored as plain copies, as blobs
+     *  used to be, and when stored in the compressed object store.
+     */
+    static void objects(int count, int size) throws IOException {
+        File src = join(cwd(), "bench-src"),
+            legacy = join(cwd(), "bench-legacy"),
+            out = join(cwd(), "bench-out");
+        src.mkdir();
+        legacy.mkdir();
+        out.mkdir();
+        ObjectStore.folder(ObjectStore.BLOB).mkdirs();
+        List<File> files = Bench.textFiles(src, count, size);
+        List<String> ids = new ArrayList<>();
+        long start = System.nanoTime();
+        for (File f : files) {
+            String id = sha1(readContents(f));
+            Files.copy(f.toPath(), join(legacy, id + ".txt").toPath(),
+                    StandardCopyOption.REPLACE_EXISTING);
+        }
+        long legacyWrite = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (File f : files) {
+            ids.add(ObjectStore.writeBlob(f));
+        }
+        long storeWrite = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int i = 0; i < files.size(); i += 1) {
+            writeContents(join(out, files.get(i).getName()),
+                    readContentsAsString(join(legacy, ids.get(i) + ".txt")));
+        }
+        long legacyCheckout = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int i = 0; i < files.size(); i += 1) {
+            ObjectStore.copyTo(ids.get(i), join(out, files.get(i).getName()));
+        }
+        long storeCheckout = System.nanoTime() - start;
+        report("plain copies", footprint(legacy), legacyWrite,
+                legacyCheckout);
+        report("object store",
+                footprint(ObjectStore.folder(ObjectStore.BLOB)), storeWrite,
+                storeCheckout);
+    }
+
+    /** Compares hashing and storing a file of MEGABYTES megabytes read
+     *  whole into memory, read through a stream, as blobs used to be
+     *  stored, and read through its channel into direct buffers, giving
+     *  the time and the bytes allocated on the heap by each once warmed
+     *  up, and checking that they find the same ID.
+     */
+    static void hash(int megabytes) throws IOException {
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        Main.main("init");
+        System.setOut(out);
+        File f = join(cwd(), "big");
+        Random random = new Random(megabytes);
+        try (OutputStream text = Files.newOutputStream(f.toPath())) {
+            byte[] line = new byte[64];
+            for (long n = 0; n < (long) megabytes << 20; n += line.length) {
+                for (int k = 0; k < line.length - 1; k += 1) {
+                    line[k] = (byte) ('a' + random.nextInt(26));
+                }
+                line[line.length - 1] = '\n';
+                text.write(line);
+            }
+        }
+        com.sun.management.ThreadMXBean bean =
+            (com.sun.management.ThreadMXBean)
+            ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        String[] ways = {"whole file", "stream", "channel", "hash only"};
+        String[] ids = new String[ways.length];
+        System.out.printf("%-12s %10s %10s %14s  %s%n", "read", "ms",
+                          "MB/s", "heap bytes", "id");
+        for (int round = 0; round < 2; round += 1) {
+            for (int w = 0; w < ways.length; w += 1) {
+                long bytes = bean.getThreadAllocatedBytes(thread);
+                long start = System.nanoTime();
+                switch (w) {
+                case 0:
+                    ids[w] = sha1(readContents(f));
+                    break;
+                case 1:
+                    try (InputStream in = Files.newInputStream(f.toPath())) {
+                        ids[w] = ObjectStore.writeBlob(in);
+                    }
+                    break;
+                case 2:
+                    ids[w] = ObjectStore.writeBlob(f);
+                    break;
+                default:
+                    ids[w] = ObjectStore.hash(f);
+                }
+                long elapsed = System.nanoTime() - start;
+                bytes = bean.getThreadAllocatedBytes(thread) - bytes;
+                if (round == 1) {
+                    System.out.printf("%-12s %10.1f %10.1f %14d  %s%n",
+                            ways[w], elapsed / 1e6,
+                            megabytes / (elapsed / 1e9), bytes,
+                            ids[w].equals(ids[0]) ? "same" : ids[w]);
+                }
+            }
+        }
+    }
+
+    /** Measures how the cost of finding and listing loose objects grows
+     *  with their number, up to MAXCOUNT, when they are all kept in one
+     *  flat folder and when they are split into subfolders by the first
+     *  two digits of their IDs. Each size is probed with LOOKUPS lookups,
+     *  half of them for objects that are not stored.
+     */
+    static void lookup(int maxCount, int lookups) {
+        System.out.printf("%-8s %10s %12s %12s %12s%n", "layout", "objects",
+                "ns/lookup", "ms/list all", "ms/list one");
+        for (int count = 1000; count <= maxCount; count *= 10) {
+            File flat = join(cwd(), "bench-flat-" + count),
+                sharded = join(cwd(), "bench-sharded-" + count);
+            List<String> ids = new ArrayList<>();
+            for (int i = 0; i < count; i += 1) {
+                ids.add(sha1(Integer.toString(i)));
+            }
+            flat.mkdir();
+            sharded.mkdir();
+            for (String id : ids) {
+                writeContents(join(flat, id), "");
+                File f = shard(sharded, id);
+                f.getParentFile().mkdir();
+                writeContents(f, "");
+            }
+            Random random = new Random(count);
+            List<String> probes = new ArrayList<>();
+            for (int i = 0; i < lookups; i += 1) {
+                probes.add(i % 2 == 0 ? ids.get(random.nextInt(count))
+                           : sha1("missing" + i));
+            }
+            for (boolean isSharded : new boolean[] {false, true}) {
+                File dir = isSharded ? sharded : flat;
+                long start = System.nanoTime();
+                for (String id : probes) {
+                    (isSharded ? shard(dir, id) : join(dir, id)).exists();
+                }
+                long find = System.nanoTime() - start;
+                start = System.nanoTime();
+                int listed = listAll(dir);
+                long listAll = System.nanoTime() - start;
+                start = System.nanoTime();
+                File one = isSharded ? shard(dir, ids.get(0)).getParentFile()
+                    : dir;
+                one.list();
+                long listOne = System.nanoTime() - start;
+                if (listed != count) {
+                    throw error("Listed %d of %d objects.", listed, count);
+                }
+                System.out.printf("%-8s %10d %12.0f %12.1f %12.2f%n",
+                        isSharded ? "sharded" : "flat", count,
+                        (double) find / lookups, listAll / 1e6,
+                        listOne / 1e6);
+            }
+        }
+    }
+
+    /** Compares, for COUNT random IDs, formatting them as hex through a
+     *  Formatter, as sha1 used to, with ObjectId, and indexing them in a
+     *  HashMap from strings to Integers, as the commit graph used to,
+     *  with an ObjectIdMap filled from their binary form, then looking
+     *  each one up from its hex digits.
+     */
+    static void ids(int count) {
+        Random random = new Random(0);
+        byte[] binary = new byte[count * ObjectId.BYTES];
+        random.nextBytes(binary);
+        ByteBuffer buf = ByteBuffer.wrap(binary);
+        String[] hex = new String[count];
+        com.sun.management.ThreadMXBean bean =
+            (com.sun.management.ThreadMXBean)
+            ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        System.out.printf("%-10s %-12s %10s %14s%n", "step", "with", "ns/id",
+                          "bytes/id");
+        for (int round = 0; round < 2; round += 1) {
+            long bytes = bean.getThreadAllocatedBytes(thread);
+            long start = System.nanoTime();
+            for (int i = 0; i < count; i += 1) {
+                Formatter f = new Formatter();
+                for (int k = 0; k < ObjectId.BYTES; k += 1) {
+                    f.format("%02x", binary[i * ObjectId.BYTES + k]);
+                }
+                hex[i] = f.toString();
+            }
+            idsRow("hex", "Formatter", count, start, bean, thread, bytes);
+            bytes = bean.getThreadAllocatedBytes(thread);
+            start = System.nanoTime();
+            for (int i = 0; i < count; i += 1) {
+                hex[i] = ObjectId.read(binary, i * ObjectId.BYTES).hex();
+            }
+            idsRow("hex", "ObjectId", count, start, bean, thread, bytes);
+            bytes = bean.getThreadAllocatedBytes(thread);
+            start = System.nanoTime();
+            Map<String, Integer> strings = new HashMap<>();
+            for (int i = 0; i < count; i += 1) {
+                strings.put(ObjectId.read(binary, i * ObjectId.BYTES).hex(),
+                            i);
+            }
+            for (int i = 0; i < count; i += 1) {
+                strings.get(hex[i]);
+            }
+            idsRow("index", "HashMap", count, start, bean, thread, bytes);
+            strings = null;
+            bytes = bean.getThreadAllocatedBytes(thread);
+            start = System.nanoTime();
+            ObjectIdMap ids = new ObjectIdMap(count);
+            for (int i = 0; i < count; i += 1) {
+                ids.put(buf, i * ObjectId.BYTES, i);
+            }
+            for (int i = 0; i < count; i += 1) {
+                ids.get(hex[i]);
+            }
+            idsRow("index", "ObjectIdMap", count, start, bean, thread,
+                   bytes);
+        }
+    }
+
+    /** Prints the time per ID since START and the bytes per ID allocated
+     *  by THREAD since BYTES, as counted by BEAN, for COUNT IDs, for the
+     *  STEP done WITH a given class.
+     */
+    private static void idsRow(String step, String with, int count,
+                               long start,
+                               com.sun.management.ThreadMXBean bean,
+                               long thread, long bytes) {
+        long time = System.nanoTime() - start;
+        bytes = bean.getThreadAllocatedBytes(thread) - bytes;
+        System.out.printf("%-10s %-12s %10.0f %14d%n", step, with,
+                          (double) time / count, bytes / count);
+    }
+
+    /** Returns the file for the object with the given ID in the
+     *  subfolder of DIR named by its first two digits.
+     */
+    static File shard(File dir, String id) {
+        return join(dir, id.substring(0, 2), id.substring(2));
+    }
+
+    /** Returns the number of plain files in DIR and its subfolders. */
+    static int listAll(File dir) {
+        int total = 0;
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                total += f.isDirectory() ? listAll(f) : 1;
+            }
+        }
+        return total;
+    }
+
+    /** Returns the total length in bytes of the files in DIR. */
+    static long footprint(File dir) {
+        long total = 0;
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                total += f.isDirectory() ? footprint(f) : f.length();
+            }
+        }
+        return total;
+    }
+
+    /** Prints one line of results for the layout NAME, which took BYTES
+     *  of disk, WRITE nanoseconds to store and CHECKOUT nanoseconds to
+     *  check out.
+     */
+    static void report(String name, long bytes, long write, long checkout) {
+        System.out.printf("%-14s %12d bytes %10.1f ms write"
+                + " %10.1f ms checkout%n", name, bytes, write / 1e6,
+                checkout / 1e6);
+    }
+
+}
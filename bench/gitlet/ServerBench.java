@@ -0,0 +1,115 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static gitlet.Utils.*;
+
+/** Benchmarks of running commands in a long-lived JVM: through the
+ *  daemon, and through the Repository API from several threads. Run
+ *  through Bench.
+ *  @author Sam Stahl
+ */
+class ServerBench {
+
+    /** Compares the time taken by COUNT log commands when each starts
+     *  its own JVM, as Main does, and when each is forwarded to a running
+     *  daemon, leaving out the startup of the client's own JVM.
+     */
+    static void daemon(int count) throws IOException {
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        Main.main("init");
+        String java = join(new File(System.getProperty("java.home")),
+                "bin", "java").getPath(),
+            classpath = System.getProperty("java.class.path");
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i += 1) {
+            run(new ProcessBuilder(java, "-cp", classpath, "gitlet.Main",
+                    "log"));
+        }
+        long spawned = System.nanoTime() - start;
+        Process daemon = new ProcessBuilder(java, "-cp", classpath,
+                "gitlet.Main", "daemon")
+            .redirectOutput(ProcessBuilder.Redirect.DISCARD).start();
+        while (!join(cwd(), DaemonCommand.SOCKET).exists()) {
+            Thread.onSpinWait();
+        }
+        start = System.nanoTime();
+        for (int i = 0; i < count; i += 1) {
+            Client.forward(new String[] {"log"});
+        }
+        long forwarded = System.nanoTime() - start;
+        Client.forward(new String[] {"daemon", "stop"});
+        try {
+            daemon.waitFor();
+        } catch (InterruptedException e) {
+            throw error(e.getMessage());
+        }
+        System.setOut(out);
+        System.out.printf("%-10s %10.2f ms/command%n", "new JVM",
+                spawned / 1e6 / count);
+        System.out.printf("%-10s %10.2f ms/command%n", "daemon",
+                forwarded / 1e6 / count);
+    }
+
+    /** Runs the process built by PB to completion, discarding its
+     *  output.
+     */
+    static void run(ProcessBuilder pb) throws IOException {
+        try {
+            pb.redirectOutput(ProcessBuilder.Redirect.DISCARD).start()
+                .waitFor();
+        } catch (InterruptedException e) {
+            throw error(e.getMessage());
+        }
+    }
+
+    /** Compares the rate at which one thread and THREADS threads, each
+     *  driving a repository of its own through the Repository API in
+     *  this JVM, can add and commit a changed file COMMITS times.
+     */
+    static void api(int threads, int commits) {
+        for (int n : new int[] {1, threads}) {
+            List<Thread> running = new ArrayList<>();
+            long start = System.nanoTime();
+            for (int t = 0; t < n; t += 1) {
+                File dir = join(cwd(), "api-" + n + "-" + t);
+                dir.mkdir();
+                Thread thread = new Thread() {
+                    @Override
+                    public void run() {
+                        Repository repo = Repository.init(dir);
+                        for (int i = 0; i < commits; i += 1) {
+                            writeContents(Utils.join(dir, "f.txt"),
+                                    "v" + i);
+                            repo.add("f.txt");
+                            repo.commit("version " + i);
+                        }
+                        if (repo.log().size() != commits + 1) {
+                            throw error("Lost commits in %s.", dir);
+                        }
+                        repo.close();
+                    }
+                };
+                thread.start();
+                running.add(thread);
+            }
+            for (Thread thread : running) {
+                try {
+                    thread.join();
+                } catch (InterruptedException e) {
+                    throw error(e.getMessage());
+                }
+            }
+            long elapsed = System.nanoTime() - start;
+            System.out.printf("%2d threads %10.0f commits/s%n", n,
+                    n * commits / (elapsed / 1e9));
+        }
+    }
+
+}
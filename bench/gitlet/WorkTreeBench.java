@@ -0,0 +1,294 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import static gitlet.Utils.*;
+
+/** Benchmarks of commands that compare or update the working
+ *  directory: status, checkout, reset, diff and merge, and the trees of
+ *  nested folders. Run through Bench.
+ *  @author Sam Stahl
+ */
+class WorkTreeBench {
+
+    /** Measures comparing a working directory of COUNT tracked files with
+     *  the index on one thread and on THREADS threads, both when every
+     *  file's modification time has changed, so that every file must be
+     *  hashed, and again once their stat data has been refreshed.
+     */
+    static void status(int count, int threads) throws IOException {
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        Main.main("init");
+        List<File> files = Bench.textFiles(cwd(), count, 256);
+        Repository.current().stage().addToStage(files);
+        Main.run("commit", "base");
+        System.setOut(out);
+        System.out.printf("%-8s %12s %12s %10s%n", "threads", "cold ms",
+                "warm ms", "hashed");
+        for (int n : new int[] {1, threads}) {
+            long now = System.currentTimeMillis();
+            for (File f : files) {
+                f.setLastModified(now);
+            }
+            Repository.freshContext();
+            Stage stage = Repository.current().stage();
+            long start = System.nanoTime();
+            stage.unstaged(n, null);
+            long cold = System.nanoTime() - start;
+            int hashed = stage.hashed();
+            start = System.nanoTime();
+            stage.unstaged(n, null);
+            long warm = System.nanoTime() - start;
+            System.out.printf("%-8d %12.1f %12.1f %10d%n", n, cold / 1e6,
+                    warm / 1e6, hashed);
+        }
+    }
+
+    /** Compares switching between two branches whose COUNT files differ
+     *  in only CHANGED of them with rewriting every file of the target
+     *  commit, as checkout used to.
+     */
+    static void checkout(int count, int changed) throws IOException {
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        Repository repo = Repository.init(cwd());
+        List<File> files = Bench.textFiles(cwd(), count, 64);
+        for (File f : files) {
+            repo.add(f.getName());
+        }
+        repo.commit("base");
+        Main.main("branch", "other");
+        repo.checkout("other");
+        for (int i = 0; i < changed; i += 1) {
+            writeContents(files.get(i), "changed " + i);
+            repo.add(files.get(i).getName());
+        }
+        repo.commit("changed");
+        System.setOut(out);
+        int rounds = 10, written = 0, deleted = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i += 1) {
+            TreeUpdate update = repo.checkout(i % 2 == 0 ? "master" : "other");
+            written += update.written();
+            deleted += update.deleted();
+        }
+        long planned = System.nanoTime() - start;
+        Commit head = Repository.open(cwd()).log().get(0);
+        start = System.nanoTime();
+        for (int i = 0; i < rounds; i += 1) {
+            for (Map.Entry<File, String> e : head.getContents().entrySet()) {
+                ObjectStore.copyTo(e.getValue(), e.getKey());
+            }
+        }
+        long full = System.nanoTime() - start;
+        System.out.printf("%-10s %10.2f ms/checkout %8d written %6d "
+                + "deleted%n", "planned", planned / 1e6 / rounds,
+                written / rounds, deleted / rounds);
+        System.out.printf("%-10s %10.2f ms/checkout %8d written%n",
+                "rewrite all", full / 1e6 / rounds, count);
+    }
+
+    /** Compares resetting back and forth between two commits of COUNT
+     *  files that differ in only CHANGED of them with checking out every
+     *  file of the target commit one by one, as reset used to.
+     */
+    static void reset(int count, int changed) throws IOException {
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        Main.main("init");
+        List<File> files = Bench.textFiles(cwd(), count, 64);
+        Repository.current().stage().addToStage(files);
+        Main.run("commit", "base");
+        String base = getHeadSha1();
+        for (int i = 0; i < changed; i += 1) {
+            writeContents(files.get(i), "changed " + i);
+        }
+        Repository.current().stage().addToStage(files.subList(0, changed));
+        Main.run("commit", "changed");
+        String[] targets = {base, getHeadSha1()};
+        System.setOut(out);
+        Repository repo = Repository.open(cwd());
+        int rounds = 10, written = 0, deleted = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i += 1) {
+            TreeUpdate update = repo.reset(targets[i % 2]);
+            written += update.written();
+            deleted += update.deleted();
+        }
+        long planned = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int i = 0; i < rounds; i += 1) {
+            String abbreviated = targets[i % 2].substring(0, 8);
+            for (File f : files) {
+                new CheckoutCommand(new String[] {"checkout", abbreviated,
+                    "--", f.getName()}).execute();
+            }
+        }
+        long perFile = System.nanoTime() - start;
+        System.out.printf("%-10s %10.2f ms/reset %8d written %6d "
+                + "deleted%n", "planned", planned / 1e6 / rounds,
+                written / rounds, deleted / rounds);
+        System.out.printf("%-10s %10.2f ms/reset %8d written%n",
+                "per file", perFile / 1e6 / rounds, count);
+    }
+
+    /** Measures a repository of COUNT files in three levels of FANOUT
+     *  folders each. Compares committing a change to one file, which
+     *  rewrites only the trees on its path, with writing every tree
+     *  afresh, and planning a checkout of a branch that differs in one
+     *  file when any file may have changed with planning it when the
+     *  filesystem monitor saw nothing change, so that only the paths
+     *  whose subtrees differ are compared.
+     */
+    static void subdirs(int count, int fanout) throws IOException {
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        Main.main("init");
+        List<File> files = new ArrayList<>();
+        Map<String, String> all = new HashMap<>();
+        for (int i = 0; i < count; i += 1) {
+            File f = join(cwd(), "d" + i % fanout, "d" + i / fanout % fanout,
+                          "d" + i / fanout / fanout % fanout, "f" + i);
+            f.getParentFile().mkdirs();
+            writeContents(f, "file " + i + "\n");
+            files.add(f);
+        }
+        Repository repo = Repository.current();
+        repo.stage().addToStage(files);
+        Main.run("commit", "base");
+        Main.run("branch", "other");
+        System.setOut(out);
+        int rounds = 10, trees = ObjectStore.ids(ObjectStore.TREE).size();
+        for (int i = 0; i < rounds; i += 1) {
+            writeContents(files.get(i), "changed " + i);
+            repo.stage().addToStage(files.get(i));
+            repo.commit("changed " + i);
+        }
+        int written = ObjectStore.ids(ObjectStore.TREE).size() - trees;
+        Map<File, String> contents = repo.head().getContents();
+        for (Map.Entry<File, String> e : contents.entrySet()) {
+            all.put(relativePath(e.getKey()), e.getValue());
+        }
+        Tree root = Tree.read(repo.head().treeID());
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i += 1) {
+            String path = relativePath(files.get(rounds + i));
+            root.apply(Map.of(path, contents.get(files.get(i))));
+        }
+        long incremental = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int i = 0; i < rounds; i += 1) {
+            new Tree().apply(all);
+        }
+        long full = System.nanoTime() - start;
+        System.out.printf("%-12s %10.2f ms/tree %10d trees of %d%n",
+                "incremental", incremental / 1e6 / rounds,
+                written / rounds, trees);
+        System.out.printf("%-12s %10.2f ms/tree %10d trees%n",
+                "all trees", full / 1e6 / rounds, trees);
+        Commit head = repo.head(), other = repo.head("other");
+        int compared = 0;
+        start = System.nanoTime();
+        for (int i = 0; i < rounds; i += 1) {
+            compared = new TreeUpdate(repo.stage(), head, other, null)
+                .compared();
+        }
+        long scan = System.nanoTime() - start;
+        System.out.printf("%-12s %10.2f ms/plan %10d compared%n",
+                "any changed", scan / 1e6 / rounds, compared);
+        start = System.nanoTime();
+        for (int i = 0; i < rounds; i += 1) {
+            compared = new TreeUpdate(repo.stage(), head, other,
+                                      new HashSet<File>()).compared();
+        }
+        long skip = System.nanoTime() - start;
+        System.out.printf("%-12s %10.2f ms/plan %10d compared%n",
+                "none changed", skip / 1e6 / rounds, compared);
+    }
+
+    /** Measures diffing two commits of COUNT files of 16 KB that all
+     *  differ in a few lines, on one thread and on THREADS threads, both
+     *  printing patches and with --stat.
+     */
+    static void diff(int count, int threads) throws IOException {
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        Main.main("init");
+        List<File> files = Bench.textFiles(cwd(), count, 16384);
+        Repository.current().stage().addToStage(files);
+        Main.run("commit", "base");
+        String base = getHeadSha1();
+        for (File f : files) {
+            String text = readContentsAsString(f);
+            int mid = text.indexOf('\n', text.length() / 2);
+            writeContents(f, "first\n" + text.substring(0, mid)
+                          + "\nmiddle" + text.substring(mid) + "last\n");
+        }
+        Repository.current().stage().addToStage(files);
+        Main.run("commit", "changed");
+        String changed = getHeadSha1();
+        out.printf("%-8s %12s %12s%n", "threads", "patch ms", "stat ms");
+        for (int n : new int[] {1, threads}) {
+            System.setProperty("gitlet.threads", Integer.toString(n));
+            long start = System.nanoTime();
+            Main.run("diff", base, changed);
+            long patch = System.nanoTime() - start;
+            start = System.nanoTime();
+            Main.run("diff", "--stat", base, changed);
+            long stat = System.nanoTime() - start;
+            out.printf("%-8d %12.1f %12.1f%n", n, patch / 1e6, stat / 1e6);
+        }
+        System.clearProperty("gitlet.threads");
+        System.setOut(out);
+    }
+
+    /** Measures merging two branches that changed different lines near
+     *  either end of one file of LINES lines, and compares the size of
+     *  the merged file with that of the whole-file conflict merges used
+     *  to write.
+     */
+    static void merge(int lines) throws IOException {
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        Main.main("init");
+        File f = join(cwd(), "big.txt");
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < lines; i += 1) {
+            text.append("generated line ").append(i).append('\n');
+        }
+        String base = text.toString();
+        writeContents(f, base);
+        Main.run("add", "big.txt");
+        Main.run("commit", "base");
+        Main.run("branch", "other");
+        writeContents(f, base.replace("generated line 10\n", "ours\n"));
+        Main.run("add", "big.txt");
+        Main.run("commit", "ours");
+        Main.run("checkout", "other");
+        writeContents(f, base.replace("generated line " + (lines - 10)
+                                      + "\n", "theirs\n"));
+        Main.run("add", "big.txt");
+        Main.run("commit", "theirs");
+        Main.run("checkout", "master");
+        System.setOut(out);
+        Repository repo = Repository.open(cwd());
+        long start = System.nanoTime();
+        MergeResult result = repo.merge("other");
+        long time = System.nanoTime() - start;
+        System.out.printf("%-10s %10.1f ms %12d bytes %10s%n", "merge",
+                time / 1e6, f.length(),
+                result.hasConflict() ? "conflict" : "clean");
+        System.out.printf("%-10s %13s %12d bytes%n", "whole file", "",
+                2 * base.length() + 28);
+    }
+
+}
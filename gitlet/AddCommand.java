@@ -1,9 +1,6 @@
 package gitlet;
 
-import java.io.File;
-
-import static gitlet.Utils.CWD;
-import static gitlet.Utils.GITLET;
+import static gitlet.Utils.gitletDir;
 
 /** Contains the logic needed to add a file to the stage.
  * @author Sam Stahl
@@ -14,28 +11,25 @@ public class AddCommand extends Command {
      *  ARGS[1] is the file to be added.
      */
     AddCommand(String[] args) {
-        if (!GITLET.exists()) {
+        if (!gitletDir().exists()) {
             System.out.println("Not in an initialized Gitlet directory.");
             setFailed();
         } else if (args.length == 1 || args.length > 2) {
             System.out.println("Incorrect operands.");
             setFailed();
-        }
-        _file = Utils.join(CWD, args[1]);
-        if (!_file.exists()) {
-            System.out.println("File does not exist.");
-            setFailed();
+        } else {
+            _path = args[1];
         }
     }
 
     @Override
     void execute() {
         if (!failed()) {
-            new Stage().addToStage(_file);
+            Repository.current().add(_path);
         }
     }
 
-    /** The file to be added to the stage. */
-    private File _file;
+    /** The path of the file to be added to the stage. */
+    private String _path;
 
 }
@@ -0,0 +1,153 @@
+package gitlet;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static gitlet.Utils.*;
+
+/** Contains the logic needed to run many commands in one process, read
+ *  one per line from a file or from the standard input. Each line is
+ *  split into arguments at spaces, except within double quotes, exactly
+ *  as a shell would split a simple command line; blank lines and lines
+ *  starting with # are skipped. The line cd DIR makes the commands that
+ *  follow run in the working directory DIR instead. What a command reads
+ *  is kept for the next one, as it is by the daemon; see Repository.begin.
+ *  With --time, the time each command took is printed to the standard
+ *  error after it runs.
+ * @author Sam Stahl
+ */
+public class BatchCommand extends Command {
+
+    /** Initializes the command with ARGS, which are batch, then
+     *  optionally --time, then optionally the file to read commands from.
+     */
+    BatchCommand(String[] args) {
+        int k = 1;
+        if (k < args.length && args[k].equals("--time")) {
+            _time = true;
+            k += 1;
+        }
+        if (args.length > k + 1) {
+            System.out.println("Incorrect operands.");
+            setFailed();
+        } else if (k < args.length) {
+            _file = join(cwd(), args[k]);
+            if (!_file.isFile()) {
+                System.out.println("File does not exist.");
+                setFailed();
+            }
+        }
+    }
+
+    @Override
+    void execute() {
+        if (failed()) {
+            return;
+        }
+        try (BufferedReader in = new BufferedReader(_file == null
+                 ? new InputStreamReader(System.in, StandardCharsets.UTF_8)
+                 : Files.newBufferedReader(_file.toPath()))) {
+            for (String line = in.readLine(); line != null;
+                 line = in.readLine()) {
+                List<String> args = split(line);
+                if (args.isEmpty() || args.get(0).startsWith("#")) {
+                    continue;
+                } else if (args.get(0).equals("cd")) {
+                    cd(args);
+                } else {
+                    run(args.toArray(new String[0]));
+                }
+            }
+        } catch (IOException e) {
+            throw error(e.getMessage());
+        }
+    }
+
+    /** Makes the commands that follow run in the directory named by ARGS,
+     *  which are cd and the directory, relative to the current one.
+     */
+    private void cd(List<String> args) {
+        if (args.size() != 2) {
+            System.out.println("Incorrect operands.");
+            return;
+        }
+        File dir = new File(args.get(1));
+        if (!dir.isAbsolute()) {
+            dir = join(cwd(), args.get(1));
+        }
+        if (!dir.isDirectory()) {
+            System.out.println("No such directory exists.");
+            return;
+        }
+        try {
+            Repository.use(dir.getCanonicalFile());
+        } catch (IOException e) {
+            throw error(e.getMessage());
+        }
+    }
+
+    /** Runs the command given by ARGS, keeping whatever the last command
+     *  read that is still current. A command that breaks is reported on
+     *  one line and leaves nothing behind for the next.
+     */
+    private void run(String[] args) {
+        long start = System.nanoTime();
+        Repository.current().begin();
+        try {
+            Main.run(args);
+            Repository.current().seal();
+        } catch (RuntimeException e) {
+            System.err.println(e.getMessage());
+        }
+        System.out.flush();
+        if (_time) {
+            System.err.printf("%8.3f ms  %s%n",
+                              (System.nanoTime() - start) / 1e6,
+                              String.join(" ", args));
+        }
+    }
+
+    /** Returns the arguments on LINE, which are separated by spaces
+     *  except where they are within double quotes.
+     */
+    static List<String> split(String line) {
+        List<String> args = new ArrayList<>();
+        StringBuilder arg = new StringBuilder();
+        boolean quoted = false, any = false;
+        for (int i = 0; i < line.length(); i += 1) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+                any = true;
+            } else if (!quoted && Character.isWhitespace(c)) {
+                if (any) {
+                    args.add(arg.toString());
+                    arg.setLength(0);
+                    any = false;
+                }
+            } else {
+                arg.append(c);
+                any = true;
+            }
+        }
+        if (any) {
+            args.add(arg.toString());
+        }
+        return args;
+    }
+
+    /** The file to read commands from, or null to read the standard
+     *  input.
+     */
+    private File _file;
+
+    /** True if the time each command takes is to be printed. */
+    private boolean _time;
+
+}
@@ -1,8 +1,5 @@
 package gitlet;
 
-import java.io.File;
-import java.io.IOException;
-
 import static gitlet.Utils.*;
 
 /** Contains the logic needed to create a branch.
@@ -14,7 +11,7 @@ public class BranchCommand extends Command {
      *  ARGS[1] is the name of the new branch.
      */
     BranchCommand(String[] args) {
-        if (!GITLET.exists()) {
+        if (!gitletDir().exists()) {
             System.out.println("Not in an initialized Gitlet directory.");
             setFailed();
         } else if (args.length != 2) {
@@ -28,18 +25,12 @@ public class BranchCommand extends Command {
     @Override
     void execute() {
         if (!failed()) {
-            File newBranch = join(GITLET, "branches", _name + ".txt");
-            if (newBranch.exists()) {
+            if (branchExists(_name)) {
                 System.out.println("A branch with that name "
                         + "already exists.");
                 return;
             }
-            try {
-                newBranch.createNewFile();
-            } catch (IOException e) {
-                throw error(e.getMessage());
-            }
-            writeContents(newBranch, getHeadSha1());
+            setHead(getHead(), _name);
         }
     }
 
@@ -0,0 +1,74 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/** A thin client for the daemon, whose main program may be invoked
+ *  exactly like Main's:
+ *      java gitlet.Client ARGS...
+ *  If a daemon is serving the repository in the current directory, ARGS
+ *  are forwarded to it and its output is copied back; otherwise the
+ *  command runs here, as Main would run it. The client loads next to
+ *  nothing of gitlet before it knows which of the two it must do.
+ * @author Sam Stahl
+ */
+public class Client {
+
+    /** Runs the command given by ARGS through the daemon if one is
+     *  running, and directly otherwise.
+     */
+    public static void main(String... args) {
+        if (!forward(args)) {
+            Main.main(args);
+        }
+    }
+
+    /** Sends ARGS to the daemon serving the repository in the current
+     *  directory and copies its reply to System.out and System.err.
+     *  Returns false, having done nothing, if no daemon is running.
+     */
+    static boolean forward(String[] args) {
+        Path socket = Paths.get(DaemonCommand.SOCKET);
+        if (!Files.exists(socket)) {
+            return false;
+        }
+        SocketChannel channel;
+        try {
+            channel = SocketChannel.open(UnixDomainSocketAddress.of(socket));
+        } catch (IOException e) {
+            return false;
+        }
+        try (channel) {
+            DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Channels.newOutputStream(channel)));
+            out.writeInt(args.length);
+            for (String arg : args) {
+                out.writeUTF(arg);
+            }
+            out.flush();
+            DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Channels.newInputStream(channel)));
+            for (int s = in.read(); s >= 0; s = in.read()) {
+                byte[] data = new byte[in.readInt()];
+                in.readFully(data);
+                (s == DaemonCommand.ERR ? System.err : System.out)
+                    .write(data, 0, data.length);
+            }
+            System.out.flush();
+            System.err.flush();
+        } catch (IOException e) {
+            throw Utils.error(e.getMessage());
+        }
+        return true;
+    }
+
+}
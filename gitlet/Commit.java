@@ -1,12 +1,17 @@
 package gitlet;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
-import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.Date;
 import java.util.Map;
-import java.util.HashMap;
+import java.util.TreeMap;
 import java.util.List;
 import java.util.ArrayList;
 
@@ -17,67 +22,137 @@ import static gitlet.Utils.*;
  */
 public class Commit implements Serializable {
 
-    /** The folder that stores all commit files. */
-    private static final File COMMITS = join(GITLET, "commits");
-
-    /** The folder that stores all blobs. */
-    private static final File FILES = join(GITLET, "files");
-
     /** The constructor for the Commit object. Takes in its PARENT 's SHA-1 ID,
      *  its MESSAGE, and it's BRANCH, and sets those values. As well, it assigns
-     *  its date to the current time, and adds all its parent's contents to its
-     *  contents map, as well as establishing the exceptions list and
+     *  its date to the current time, and starts out sharing its parent's
+     *  tree, as well as establishing the exceptions list and
      *  _hasConflict in the event of a merge.
      */
     Commit(String parent, String message, String branch) {
         _message = message;
         _branch = branch;
-        _date = new Date();
+        _time = System.currentTimeMillis();
         _parent = parent;
-        _contents = new HashMap<>();
         if (_parent != null) {
-            for (Map.Entry<File, String> e
-                    : parent()._contents.entrySet()) {
-                _contents.put(e.getKey(), e.getValue());
-            }
+            _tree = parent().treeID();
+            _size = parent()._size;
         }
-        _exceptions = new ArrayList<>();
+        _changes = new TreeMap<>();
         _delFromMerge = new ArrayList<>();
         _hasConflict = false;
     }
 
-    /** Returns the SHA-1 ID of this commit. */
-    String id() {
-        return sha1(serialize(this));
+    /** A commit to be filled in by decode. */
+    private Commit() {
+    }
+
+    /** Returns the SHA-1 ID of this commit. Once the commit has been
+     *  stored it can no longer change, so its ID is only computed once.
+     */
+    public String id() {
+        if (_id != null) {
+            return _id;
+        }
+        return sha1(encode());
+    }
+
+    /** Records ID as the SHA-1 ID of this stored commit. */
+    void setId(String id) {
+        _id = id;
     }
 
     /** Returns the date of this commit in the acceptable format for logging. */
-    String date() {
-        SimpleDateFormat d = new SimpleDateFormat("EEE MMM d HH:mm:ss yyyy Z");
-        return d.format(_date);
+    public String date() {
+        return DATE_FORMAT.format(Instant.ofEpochMilli(_time));
+    }
+
+    /** Returns the time of this commit in milliseconds since the epoch. */
+    public long time() {
+        return _time;
     }
 
-    /** Returns the contents of this commit. */
+    /** Returns the contents of this commit, reading them from its tree
+     *  the first time they are needed, as a read-only PathTable.
+     */
     Map<File, String> getContents() {
+        if (_contents == null) {
+            String tree = treeID();
+            Map<String, String> files = new TreeMap<>();
+            if (tree != null) {
+                files.putAll(Tree.files(tree));
+            }
+            if (_changes != null) {
+                for (Map.Entry<String, String> e : _changes.entrySet()) {
+                    if (e.getValue() == null) {
+                        files.remove(e.getKey());
+                    } else {
+                        files.put(e.getKey(), e.getValue());
+                    }
+                }
+            }
+            _contents = new PathTable(cwd(), files,
+                                      Repository.current().paths());
+        }
         return _contents;
     }
 
+    /** Returns the SHA-1 ID of this commit's root tree. A commit of the
+     *  first gitlet release, which kept its files in a map instead, has
+     *  its tree built and stored the first time it is asked for.
+     */
+    synchronized String treeID() {
+        load();
+        if (_legacyContents != null) {
+            _tree = new Tree().apply(_legacyContents).write();
+            _legacyContents = null;
+        }
+        return _tree;
+    }
+
+    /** Returns the number of files this commit tracks. */
+    int size() {
+        return _size;
+    }
+
+    /** Makes this uncommitted commit track file F with the blob BLOB. */
+    private void track(File f, String blob) {
+        _changes.put(relativePath(f), blob);
+        _contents = null;
+    }
+
+    /** Makes this uncommitted commit stop tracking file F. */
+    private void untrack(File f) {
+        _changes.put(relativePath(f), null);
+        _contents = null;
+    }
+
     /** Returns the commit's message. */
-    String message() {
+    public String message() {
         return _message;
     }
 
     /** Returns the commit's parent commit object. */
     Commit parent() {
+        load();
         if (_parent == null) {
             return null;
         }
-        File parent = join(COMMITS, _parent + ".txt");
-        return readObject(parent, Commit.class);
+        return Repository.current().commits().get(_parent);
+    }
+
+    /** Returns the commit's parent's SHA-1 id, if it has one. */
+    public String parentID() {
+        load();
+        return _parent;
     }
 
     /** Returns the commit's merge parent's SHA-1 id, if it has one. */
-    String mergeParentID() {
+    public String mergeParentID() {
+        byte[] encoded = _encoded;
+        if (encoded != null && (encoded[2] & MERGE_PARENT) == 0) {
+            return null;
+        }
+        load();
         return _mergeParent;
     }
 
@@ -88,7 +163,12 @@ public class Commit implements Serializable {
 
     /** Returns true if the commit is tracking the file F. */
     boolean contains(File f) {
-        return _contents.containsKey(f);
+        return getContents().containsKey(f);
+    }
+
+    /** Returns true if this merge commit had to record conflicts. */
+    public boolean hasConflict() {
+        return _hasConflict;
     }
 
     /** Returns the commit's branch. */
@@ -96,23 +176,17 @@ public class Commit implements Serializable {
         return _branch;
     }
 
-    /** Returns true if the commit has file F in its exceptions. */
-    boolean hasExceptedFile(File f) {
-        return _exceptions.contains(f);
-    }
-
     /** Returns true if the commit has file F in its exceptions. */
     boolean toBeRemoved(File f) {
-        return _delFromMerge.contains(f);
+        load();
+        return _delFromMerge.contains(relativePath(f));
     }
 
-    /** Returns the commit's version of file F. */
-    File getVersionOf(File f) {
-        if (!_contents.containsKey(f)) {
-            return null;
-        }
-        String sha1 = _contents.get(f);
-        return join(FILES, sha1 + ".txt");
+    /** Returns the SHA-1 ID of the blob holding the commit's version
+     *  of file F, or null if the commit does not track F.
+     */
+    String getVersionOf(File f) {
+        return getContents().get(f);
     }
 
     /** Creates the initial commit for a repository.
@@ -120,70 +194,46 @@ public class Commit implements Serializable {
      */
     public static void initialCommit() {
         Commit c = new Commit(null, "initial commit", "master");
-        c._date = new Date(0);
+        c._time = 0;
         c.commit(true);
     }
 
-    /** Adds the files and their sha-1 ids from the STAGE to the commit,
-     *  as well as creating new blobs as needed.
-     */
-    private void addBlobs(List<File> stage) {
-        for (File f : stage) {
-            String sha1 = sha1(readContentsAsString(f));
-            File wdFile = join(Utils.CWD, f.getName());
-            _contents.put(wdFile, sha1);
-        }
-        for (Map.Entry<File, String> e : _contents.entrySet()) {
-            File f = join(FILES, e.getValue() + ".txt");
-            if (!f.exists()) {
-                try {
-                    f.createNewFile();
-                    writeContents(f, readContentsAsString(e.getKey()));
-                } catch (IOException err) {
-                    throw error(err.getMessage());
-                }
-            }
-        }
-    }
-
-    /** Removes the given files in STAGE from the commit so they are
-     *  no longer tracked.
-     */
-    private void stopTracking(List<File> stage) {
-        for (File f : stage) {
-            _contents.remove(join(CWD, f.getName()));
-        }
-    }
-
     /** Stores the commit data. Accesses the stage to determine if changes
      *  should be made, or ignores it outright during initial commits
-     *  or merges if IGNORESTAGE is true. Adds all the necessary blobs
-     *  to the files folder and updates the contents of the commit,
-     *  and creates a new file that stores the data for the commit,
-     *  as well as setting the head of the commit's branch to this commit.
+     *  or merges if IGNORESTAGE is true. Updates the contents of the
+     *  commit with the staged blobs, which are already stored, and
+     *  creates a new file that stores the data for the commit, as well
+     *  as setting the head of the commit's branch to this commit. The
+     *  index then lists exactly the files of this commit, so the stage is
+     *  empty again without being touched.
      */
     void commit(boolean ignoreStage) {
-        Stage s = new Stage();
-        List<File> addedFiles = s.getAddedFiles(),
+        if (!ignoreStage) {
+            Stage s = Repository.current().stage();
+            List<File> addedFiles = s.getAddedFiles(),
                 removedFiles = s.getRemovedFiles();
-        if (addedFiles.isEmpty() && removedFiles.isEmpty() && !ignoreStage) {
-            System.out.println("No changes added to the commit.");
-            return;
+            if (addedFiles.isEmpty() && removedFiles.isEmpty()) {
+                throw error("No changes added to the commit.");
+            }
+            for (File f : addedFiles) {
+                track(f, s.blob(f));
+            }
+            for (File f : removedFiles) {
+                untrack(f);
+            }
         }
-        addBlobs(addedFiles);
-        stopTracking(removedFiles);
-        s.clear();
-        File commit = Utils.join(COMMITS, id() + ".txt");
-        try {
-            commit.createNewFile();
-            writeObject(commit, this);
-        } catch (IOException e) {
-            throw error(e.getMessage());
+        Tree root = _tree == null ? new Tree() : Tree.read(_tree);
+        if (_tree == null || !_changes.isEmpty()) {
+            root = root.apply(_changes);
+            _tree = root.write();
+            _size = root.count();
         }
+        _changes = null;
+        _id = ObjectStore.write(ObjectStore.COMMIT, encode());
+        CommitIndex.add(_id);
+        CommitGraph.add(this);
+        Repository.current().commits().put(this);
         setHead(this, getHeadBranch());
-        if (_hasConflict) {
-            System.out.println("Encountered a merge conflict.");
-        }
     }
 
     /** A normal commit that uses the contents of the stage. */
@@ -191,221 +241,235 @@ public class Commit implements Serializable {
         commit(false);
     }
 
-    /** Returns the minimum value integer in the given map M. */
-    int minValue(Map<String, Integer> m) {
-        int min = Integer.MAX_VALUE;
-        for (int n : m.values()) {
-            if (n < min) {
-                min = n;
-            }
-        }
-        return min;
-    }
-
-    /** Returns the first commit found in map M with value N
-     *  and returns null if nothing is found.
+    /** Merges the current branch and the branch of the OTHER commit
+     *  together in a new commit, which takes every change of PLAN, and
+     *  then checks out the commit. The merged contents of the files both
+     *  branches changed are worked out first, on -Dgitlet.threads
+     *  threads.
      */
-    Commit getFromValue(Map<String, Integer> m, int n) {
-        for (String c : m.keySet()) {
-            if (m.get(c) == n) {
-                return getCommitByID(c);
+    void merge(Commit other, MergePlan plan) {
+        setMergeParent(other);
+        _hasConflict = plan.resolve(threads());
+        for (Map.Entry<String, String> e : plan.blobs().entrySet()) {
+            File f = join(cwd(), e.getKey());
+            if (e.getValue() == null) {
+                untrack(f);
+                _delFromMerge.add(e.getKey());
+            } else {
+                track(f, e.getValue());
             }
         }
-        return null;
+        commit(true);
+        Repository.current().reset(id());
     }
 
-    /** Returns a latest common ancestor between the head of the current branch
-     *  and the OTHERBRANCH. Can be multiple so chooses one arbitrarily.
+    /** Returns this commit in the binary format: the MAGIC byte and the
+     *  VERSION; a byte of flags saying whether it had conflicts and which
+     *  of its parents and its tree it has; those IDs as 20 bytes each; its
+     *  size and time in milliseconds as varints; its message and branch;
+     *  and the paths of the files its merge deleted. Each string is its
+     *  length in UTF-8 bytes as a varint followed by those bytes.
      */
-    private Commit latestCommonAncestor(String otherBranch) {
-        Map<String, Integer> candidates = new HashMap<>(),
-                mainPath = new HashMap<>(), otherPath = new HashMap<>();
-        Commit lca, currentMain = getHead(), currentOther
-                = getHead(otherBranch);
-        int distance = 0;
-        boolean finished = false;
-        while (!finished) {
-            if (currentMain != null) {
-                mainPath.put(currentMain.id(), distance);
-                if (currentMain.mergeParentID() != null) {
-                    String mergeParent = currentMain.mergeParentID();
-                    mainPath.put(mergeParent, distance + 1);
-                    if (otherPath.containsKey(mergeParent)) {
-                        candidates.put(mergeParent, distance + 1);
-                        finished = true;
-                    }
-                }
-                if (otherPath.containsKey(currentMain.id())) {
-                    candidates.put(currentMain.id(), distance);
-                    finished = true;
-                }
-                currentMain = currentMain.parent();
-            }
-            if (currentOther != null) {
-                otherPath.put(currentOther.id(), distance);
-                if (currentOther.mergeParentID() != null) {
-                    String mergeParent = currentOther.mergeParentID();
-                    otherPath.put(mergeParent, distance + 1);
-                    if (otherPath.containsKey(mergeParent)) {
-                        candidates.put(mergeParent, distance + 1);
-                        finished = true;
-                    }
-                }
-                if (mainPath.containsKey(currentOther.id())) {
-                    candidates.put(currentOther.id(), distance);
-                    finished = true;
-                }
-                currentOther = currentOther.parent();
+    byte[] encode() {
+        treeID();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(
+                2 + 3 * UID_BYTES + _message.length() + _branch.length()
+                + ENCODE_SLACK);
+        out.write(MAGIC);
+        out.write(VERSION);
+        out.write((_hasConflict ? CONFLICT : 0)
+                  | (_parent != null ? PARENT : 0)
+                  | (_mergeParent != null ? MERGE_PARENT : 0)
+                  | (_tree != null ? TREE : 0));
+        for (String id : new String[] {_parent, _mergeParent, _tree}) {
+            if (id != null) {
+                out.writeBytes(ObjectId.fromHex(id).bytes());
             }
-            if (currentMain == null && currentOther == null) {
-                finished = true;
-            }
-            distance += 1;
         }
-        lca = getFromValue(candidates, minValue(candidates));
-        if (lca == null) {
-            return null;
-        } else if (lca.id().equals(getHead(otherBranch).id())) {
-            System.out.println("Given branch is an ancestor "
-                    + "of the current branch");
-            return null;
-        } else if (lca.id().equals(getHead().id())) {
-            System.out.println("Current branch fast-forwarded.");
-            String[] checkoutArgs = {"checkout", otherBranch};
-            new CheckoutCommand(checkoutArgs).execute();
-            return null;
+        Delta.writeVarint(out, _size);
+        Delta.writeVarint(out, _time);
+        Delta.writeString(out, _message);
+        Delta.writeString(out, _branch);
+        Delta.writeVarint(out, _delFromMerge.size());
+        for (String path : _delFromMerge) {
+            Delta.writeString(out, path);
         }
-        return lca;
+        return out.toByteArray();
     }
 
-    /** Returns true if F has the same contents in this branch and the
-     *  SPLITPOINT, but differs between the OTHER branch and the SPLITPOINT.
+    /** Returns the commit stored as BYTES, either in the binary format or
+     *  by Java serialization, as every earlier version of gitlet stored
+     *  commits. Only the header of a commit in the binary format, which is
+     *  all log and find need, is decoded now: its IDs, which are skipped
+     *  over, and the paths its merge deleted are decoded from BYTES when
+     *  first asked for.
      */
-    private boolean onlyChangedInOtherBranch(File f, Commit splitPoint,
-                                             Commit other) {
-        return (contains(f) && splitPoint.contains(f)
-                && contentsMatch(splitPoint.getVersionOf(f),
-                getVersionOf(f)) && other.contains(f)
-                && !contentsMatch(splitPoint.getVersionOf(f),
-                other.getVersionOf(f)));
+    static Commit decode(byte[] bytes) {
+        if (bytes.length == 0 || bytes[0] != MAGIC) {
+            return deserializeAnyVersion(bytes, Commit.class);
+        } else if (bytes[1] != VERSION) {
+            throw error("Unknown commit format %d.", bytes[1]);
+        }
+        Commit c = new Commit();
+        int flags = bytes[2];
+        int[] pos = {3 + Integer.bitCount(flags & (PARENT | MERGE_PARENT
+                                                    | TREE)) * UID_BYTES};
+        c._hasConflict = (flags & CONFLICT) != 0;
+        c._size = (int) Delta.readVarint(bytes, pos);
+        c._time = Delta.readVarint(bytes, pos);
+        c._message = Delta.readString(bytes, pos);
+        c._branch = Delta.readString(bytes, pos);
+        c._encoded = bytes;
+        c._tail = pos[0];
+        return c;
     }
 
-    /** Returns true if file F is present in the SPLITPOINT but removed
-     *  in the current branch and the OTHER branch.
+    /** Decodes the IDs of this commit and the paths its merge deleted
+     *  from its stored bytes, unless they already have been.
      */
-    private boolean presentInCWDRemovedInBoth(File f, Commit splitPoint,
-                                              Commit other) {
-        return (!contains(f) && !other.contains(f) && splitPoint.contains(f)
-                && cwdContains(f));
+    private synchronized void load() {
+        if (_encoded == null) {
+            return;
+        }
+        byte[] bytes = _encoded;
+        int flags = bytes[2];
+        int[] pos = {3};
+        _parent = (flags & PARENT) != 0 ? readID(bytes, pos) : null;
+        _mergeParent = (flags & MERGE_PARENT) != 0
+            ? readID(bytes, pos) : null;
+        _tree = (flags & TREE) != 0 ? readID(bytes, pos) : null;
+        pos[0] = _tail;
+        int deleted = (int) Delta.readVarint(bytes, pos);
+        _delFromMerge = new ArrayList<>(deleted);
+        for (int i = 0; i < deleted; i += 1) {
+            _delFromMerge.add(Delta.readString(bytes, pos));
+        }
+        _encoded = null;
     }
 
-    /** Returns true if the file F is only present in the branch of
-     *  the OTHER commit, and not in the SPLITPOINT or in the current branch.
-     */
-    private boolean onlyInGivenBranch(File f, Commit splitPoint, Commit other) {
-        return (!contains(f) && !splitPoint.contains(f) && other.contains(f));
+    /** Returns true if BYTES hold a commit stored by Java serialization. */
+    static boolean isLegacy(byte[] bytes) {
+        return bytes.length == 0 || bytes[0] != MAGIC;
     }
 
-    /** Returns true if File F is unmodified from the SPLITPOINT
-     *  in the current branch, but is absent in the OTHER branch.
+    /** Reads an ID stored as 20 bytes from BYTES at POS[0], advancing
+     *  POS[0] past it.
      */
-    private boolean ummodCurrentAbsentGiven(File f, Commit splitPoint,
-                                            Commit other) {
-        return (splitPoint.contains(f) && !other.contains(f)
-            && contentsMatch(getVersionOf(f), splitPoint.getVersionOf(f)));
+    private static String readID(byte[] bytes, int[] pos) {
+        String id = ObjectId.read(bytes, pos[0]).hex();
+        pos[0] += UID_BYTES;
+        return id;
     }
 
-    /** Returns true if file F is in conflict between the current branch and
-     *  the OTHER branch from the SPLITPOINT. This occurs if either the file
-     *  has different contents in each branch, or if it has been modified in
-     *  one branch and removed in the other.
-     */
-    private boolean inConflict(File f, Commit splitPoint, Commit other) {
-        boolean differentChanges = (contains(f) && other.contains(f)
-                && !contentsMatch(getVersionOf(f), other.getVersionOf(f))),
-                oneAbsence = (splitPoint.contains(f)
-                && ((!contains(f) && other.contains(f)
-                && !contentsMatch(splitPoint.getVersionOf(f),
-                        other.getVersionOf(f)))
-                || (!other.contains(f) && contains(f)
-                && !contentsMatch(splitPoint.getVersionOf(f),
-                        getVersionOf(f)))));
-        return differentChanges || oneAbsence;
-    }
-
-    /** Articulates merge conflicts among file F between
-     *  this branch and the OTHER branch.
+    /** Stores and returns a copy of this stored commit in the binary
+     *  format whose parents are PARENT and MERGEPARENT instead.
      */
-    void mergeConflict(File f, Commit other) {
-        _hasConflict = true;
-        File current = getVersionOf(f),
-                fromBranch = other.getVersionOf(f);
-        String mergeContents, newName,
-                cContents = "", otherContents = "";
-        if (current != null && current.exists()) {
-            cContents = readContentsAsString(current);
-        }
-        if (fromBranch != null && fromBranch.exists()) {
-            otherContents = readContentsAsString(fromBranch);
-        }
-        mergeContents = "<<<<<<< HEAD\n" + cContents + "=======\n"
-                + otherContents + ">>>>>>>\n";
-        newName = sha1(mergeContents);
-        _contents.put(f, newName);
-        File merged = join(FILES, newName + ".txt");
-        try {
-            merged.createNewFile();
-            writeContents(merged, mergeContents);
-        } catch (IOException e) {
-            throw error(e.getMessage());
-        }
+    Commit rewrite(String parent, String mergeParent) {
+        Commit c = decode(encode());
+        c.load();
+        c._parent = parent;
+        c._mergeParent = mergeParent;
+        c._id = ObjectStore.write(ObjectStore.COMMIT, c.encode());
+        return c;
     }
 
-    /** Adds to, modifies, and removes from the contents of the merge commit
-     *  based on the differences between the current branch, the SPLITPOINT,
-     *  and the OTHER branch.
+    /** Reads a commit stored by Java serialization from IN, whose fields
+     *  are those listed in serialPersistentFields.
      */
-    private void resolveFilesAtSplitPoint(Commit splitPoint, Commit other) {
-        for (File f : other.getContents().keySet()) {
-            if (onlyInGivenBranch(f, splitPoint, other)) {
-                _contents.put(f, other.getContents().get(f));
+    private void readObject(ObjectInputStream in)
+        throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        _hasConflict = fields.get("_hasConflict", false);
+        _size = fields.get("_size", 0);
+        _parent = (String) fields.get("_parent", null);
+        _mergeParent = (String) fields.get("_mergeParent", null);
+        _tree = (String) fields.get("_tree", null);
+        Map<?, ?> contents = (Map<?, ?>) fields.get("_contents", null);
+        if (_tree == null && contents != null) {
+            _legacyContents = new TreeMap<>();
+            for (Map.Entry<?, ?> e : contents.entrySet()) {
+                _legacyContents.put(((File) e.getKey()).getName(),
+                                    (String) e.getValue());
             }
+            _size = _legacyContents.size();
         }
-        for (File f : splitPoint.getContents().keySet()) {
-            if (onlyChangedInOtherBranch(f, splitPoint, other)) {
-                _contents.put(f, other.getVersionOf(f).getName());
-            } else if (presentInCWDRemovedInBoth(f, splitPoint, other)) {
-                _exceptions.add(f);
-            } else if (ummodCurrentAbsentGiven(f, splitPoint, other)) {
-                _contents.remove(f);
-                _delFromMerge.add(f);
-            } else if (inConflict(f, splitPoint, other)) {
-                mergeConflict(f, other);
-            }
-        }
-        for (File f : CWD.listFiles()) {
-            if (!splitPoint.contains(f) && inConflict(f, splitPoint, other)) {
-                mergeConflict(f, other);
+        _message = (String) fields.get("_message", null);
+        _branch = (String) fields.get("_branch", null);
+        Date date = (Date) fields.get("_date", null);
+        _time = date == null ? 0 : date.getTime();
+        _delFromMerge = new ArrayList<>();
+        List<?> deleted = (List<?>) fields.get("_delFromMerge", null);
+        if (deleted != null) {
+            for (Object f : deleted) {
+                _delFromMerge.add(((File) f).getName());
             }
         }
     }
 
-    /** Merges the current branch and the branch of the OTHER
-     *  commit together in a new commit, and then checks out the commit.
-     *  OTHERBRANCH is used for special cases where the other commit
-     *  does not store the branch being merged in.
+    /** The first byte of a commit in the binary format, which no Java
+     *  serialization stream starts with.
      */
-    void merge(Commit other, String otherBranch) {
-        setMergeParent(other);
-        Commit splitPoint = latestCommonAncestor(otherBranch);
-        if (splitPoint == null) {
-            return;
-        }
-        resolveFilesAtSplitPoint(splitPoint, other);
-        commit(true);
-        String[] resetArgs = {"reset", id()};
-        new ResetCommand(resetArgs).reset(true);
-    }
+    private static final byte MAGIC = 'C';
+
+    /** The format of the dates of commits in the log. */
+    private static final DateTimeFormatter DATE_FORMAT =
+        DateTimeFormatter.ofPattern("EEE MMM d HH:mm:ss yyyy Z")
+        .withZone(ZoneId.systemDefault());
+
+    /** The version of the binary format. */
+    private static final byte VERSION = 1;
+
+    /** The flag set if a merge commit recorded conflicts. */
+    private static final int CONFLICT = 1;
+
+    /** The flag set if a commit has a parent. */
+    private static final int PARENT = 2;
+
+    /** The flag set if a commit has a merge parent. */
+    private static final int MERGE_PARENT = 4;
+
+    /** The flag set if a commit has a tree. */
+    private static final int TREE = 8;
+
+    /** The number of bytes of a binary SHA-1 ID. */
+    private static final int UID_BYTES = UID_LENGTH / 2;
+
+    /** Room left when encoding for the varints and non-ASCII text. */
+    private static final int ENCODE_SLACK = 32;
+
+    /** The version of the Java serialization commits used to be stored
+     *  with, which is that of the first gitlet release, kept so that
+     *  repositories it made can still be read and upgraded.
+     */
+    private static final long serialVersionUID = -5727471439341336727L;
+
+    /** The fields of commits stored by Java serialization. */
+    private static final ObjectStreamField[] serialPersistentFields = {
+        new ObjectStreamField("_hasConflict", boolean.class),
+        new ObjectStreamField("_size", int.class),
+        new ObjectStreamField("_branch", String.class),
+        new ObjectStreamField("_contents", Map.class),
+        new ObjectStreamField("_date", Date.class),
+        new ObjectStreamField("_delFromMerge", List.class),
+        new ObjectStreamField("_exceptions", List.class),
+        new ObjectStreamField("_mergeParent", String.class),
+        new ObjectStreamField("_message", String.class),
+        new ObjectStreamField("_parent", String.class),
+        new ObjectStreamField("_tree", String.class),
+    };
+
+    /** The SHA-1 ID of this commit, once it has been stored. */
+    private String _id;
+
+    /** The stored bytes of a decoded commit whose IDs and deleted paths
+     *  have not been decoded yet, or null once they have.
+     */
+    private byte[] _encoded;
+
+    /** Where the paths a decoded commit's merge deleted start in
+     *  _encoded.
+     */
+    private int _tail;
 
     /** True if commit contains a merge conflict. */
     private boolean _hasConflict;
@@ -416,14 +480,30 @@ public class Commit implements Serializable {
     /** The secondary parent of this commit, in the event of a merge. */
     private String _mergeParent;
 
-    /** The files the commit contains. */
+    /** The SHA-1 ID of the tree holding the files the commit contains. */
+    private String _tree;
+
+    /** The number of files the commit contains. */
+    private int _size;
+
+    /** The files of a commit of the first gitlet release, by name, until
+     *  its tree has been built from them.
+     */
+    private Map<String, String> _legacyContents;
+
+    /** The files the commit contains, once read from its tree. */
     private Map<File, String> _contents;
 
-    /** Files not technically tracked but not deleted in event of merge. */
-    private List<File> _exceptions;
+    /** The files added, changed (to their new blob IDs) or removed (to
+     *  null) by this commit, by repository-relative path, until it is
+     *  stored.
+     */
+    private Map<String, String> _changes;
 
-    /** Files to be deleted after merge. */
-    private List<File> _delFromMerge;
+    /** The paths of the files deleted by a merge, which reset deletes
+     *  even if they are untracked.
+     */
+    private List<String> _delFromMerge;
 
     /** The commit's message. */
     private String _message;
@@ -431,7 +511,7 @@ public class Commit implements Serializable {
     /** The branch this commit is on. */
     private String _branch;
 
-    /** The date and time of this commit. */
-    private Date _date;
+    /** The time of this commit in milliseconds since the epoch. */
+    private long _time;
 
 }
@@ -0,0 +1,100 @@
+package gitlet;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static gitlet.Utils.*;
+
+/** A bounded, least-recently-used cache of decoded commits keyed by
+ *  their SHA-1 IDs. Each commit is weighed by the number of files it
+ *  tracks, so a few very large commits cannot crowd out the heap. Each
+ *  repository has its own, since a commit knows its files by their paths
+ *  in the repository's working directory.
+ * @author Sam Stahl
+ */
+class CommitCache {
+
+    /** The maximum total weight of the commits held at once. */
+    private static final long MAX_WEIGHT = 1 << 20;
+
+    /** Returns the commit with the given full ID, reading it from disk
+     *  only if it is not already cached. Returns null if there is no
+     *  such commit.
+     */
+    Commit get(String id) {
+        Commit c = _commits.get(id);
+        if (c != null) {
+            _hits += 1;
+            return c;
+        }
+        _misses += 1;
+        byte[] bytes = ObjectStore.load(ObjectStore.COMMIT, id);
+        if (bytes == null) {
+            return null;
+        }
+        c = Commit.decode(bytes);
+        c.setId(id);
+        put(c);
+        return c;
+    }
+
+    /** Caches the stored commit C, evicting the least recently used
+     *  commits as needed to stay within the weight limit.
+     */
+    void put(Commit c) {
+        Commit old = _commits.put(c.id(), c);
+        if (old != null) {
+            _weight -= weigh(old);
+        }
+        _weight += weigh(c);
+        Iterator<Map.Entry<String, Commit>> it =
+                _commits.entrySet().iterator();
+        while (_weight > MAX_WEIGHT && _commits.size() > 1) {
+            _weight -= weigh(it.next().getValue());
+            it.remove();
+        }
+    }
+
+    /** Forgets every cached commit. */
+    void clear() {
+        _commits.clear();
+        _weight = 0;
+    }
+
+    /** Returns the number of lookups answered from the cache. */
+    long hits() {
+        return _hits;
+    }
+
+    /** Returns the number of lookups that had to read from disk. */
+    long misses() {
+        return _misses;
+    }
+
+    /** Returns a summary of the cache's counters. */
+    String stats() {
+        return String.format("commit cache: %d hits, %d misses, "
+                + "%d commits, weight %d", _hits, _misses,
+                _commits.size(), _weight);
+    }
+
+    /** Returns the weight of commit C. */
+    private static long weigh(Commit c) {
+        return 1 + c.size();
+    }
+
+    /** The cached commits, from least to most recently used. */
+    private final Map<String, Commit> _commits =
+            new LinkedHashMap<>(16, 0.75f, true);
+
+    /** The total weight of the cached commits. */
+    private long _weight;
+
+    /** The number of cache hits. */
+    private long _hits;
+
+    /** The number of cache misses. */
+    private long _misses;
+
+}
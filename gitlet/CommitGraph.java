@@ -0,0 +1,271 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static gitlet.Utils.*;
+
+/** The commit-graph file of a repository, which stores the shape of the
+ *  commit history so that it can be walked without deserializing any
+ *  commits. After a short header, the file holds one fixed-width record
+ *  per commit, in an order where parents always precede their children:
+ *  the commit's 20-byte binary ID, the record indices of its parent and
+ *  merge parent (or -1), its timestamp in milliseconds and its generation
+ *  number, which is one more than the largest generation of its parents.
+ *  The file is memory-mapped for reading and appended to on each commit.
+ * @author Sam Stahl
+ */
+class CommitGraph {
+
+    /** The file that stores the commit graph. */
+    private static File graphFile() {
+        return join(gitletDir(), "commit-graph");
+    }
+
+    /** Identifies a commit-graph file. */
+    private static final int MAGIC = 0x474c4347;
+
+    /** The version of the record layout. */
+    private static final int VERSION = 1;
+
+    /** The width in bytes of the header. */
+    private static final int HEADER = 8;
+
+    /** The width in bytes of a binary SHA-1 ID. */
+    private static final int ID_BYTES = ID_LENGTH / 2;
+
+    /** The width in bytes of a single record. */
+    private static final int RECORD = ID_BYTES + 4 + 4 + 8 + 4;
+
+    /** Denotes a missing parent. */
+    static final int NONE = -1;
+
+    /** Returns the number of commits in the graph. */
+    static int size() {
+        return load()._size;
+    }
+
+    /** Returns the index of the commit with the given full ID, or NONE if
+     *  there is no such commit. The graph is regenerated if the commit
+     *  exists but was never recorded in it.
+     */
+    static int find(String id) {
+        ObjectId key = ObjectId.fromHex(id);
+        int i = load()._indices.get(key);
+        if (i == ObjectIdMap.MISSING
+            && ObjectStore.contains(ObjectStore.COMMIT, id)) {
+            rebuild();
+            i = load()._indices.get(key);
+        }
+        return i == ObjectIdMap.MISSING ? NONE : i;
+    }
+
+    /** Returns the ID of commit I. */
+    static String id(int i) {
+        CommitGraph graph = load();
+        if (graph._ids[i] == null) {
+            graph._ids[i] = ObjectId.read(graph._buffer, offset(i)).hex();
+        }
+        return graph._ids[i];
+    }
+
+    /** Returns the index of the parent of commit I, or NONE. */
+    static int parent(int i) {
+        return load()._buffer.getInt(offset(i) + ID_BYTES);
+    }
+
+    /** Returns the index of the merge parent of commit I, or NONE. */
+    static int mergeParent(int i) {
+        return load()._buffer.getInt(offset(i) + ID_BYTES + 4);
+    }
+
+    /** Returns the timestamp of commit I in milliseconds. */
+    static long timestamp(int i) {
+        return load()._buffer.getLong(offset(i) + ID_BYTES + 8);
+    }
+
+    /** Returns the generation number of commit I. */
+    static int generation(int i) {
+        return load()._buffer.getInt(offset(i) + ID_BYTES + 16);
+    }
+
+    /** Forgets the loaded graph, so that it is read again the next time
+     *  it is needed.
+     */
+    static void reload() {
+        Repository.current().setGraph(null);
+    }
+
+    /** Appends the newly stored commit C to the graph, regenerating the
+     *  whole graph if this repository does not have one yet.
+     */
+    static void add(Commit c) {
+        if (!graphFile().exists()) {
+            rebuild();
+            return;
+        }
+        int parent = c.parentID() == null ? NONE : find(c.parentID()),
+            merge = c.mergeParentID() == null
+                ? NONE : find(c.mergeParentID());
+        if (load()._indices.containsKey(ObjectId.fromHex(c.id()))) {
+            return;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writeRecord(out, c.id(), parent, merge, c.time(),
+                    1 + Math.max(parent == NONE ? 0 : generation(parent),
+                            merge == NONE ? 0 : generation(merge)));
+        } catch (IOException e) {
+            throw error(e.getMessage());
+        }
+        try (FileOutputStream out = new FileOutputStream(graphFile(), true)) {
+            out.write(bytes.toByteArray());
+        } catch (IOException e) {
+            throw error(e.getMessage());
+        }
+        reload();
+    }
+
+    /** Regenerates the graph from scratch out of every stored commit. */
+    static void rebuild() {
+        List<Commit> order = new ArrayList<>();
+        ObjectIdMap indices = new ObjectIdMap();
+        for (String id : ObjectStore.ids(ObjectStore.COMMIT)) {
+            sort(Repository.current().commits().get(id), order, indices);
+        }
+        int[] generations = new int[order.size()];
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            for (int i = 0; i < order.size(); i += 1) {
+                Commit c = order.get(i);
+                int parent = c.parentID() == null
+                        ? NONE : indices.get(c.parentID()),
+                    merge = c.mergeParentID() == null
+                        ? NONE : indices.get(c.mergeParentID());
+                generations[i] = 1 + Math.max(
+                        parent == NONE ? 0 : generations[parent],
+                        merge == NONE ? 0 : generations[merge]);
+                writeRecord(out, c.id(), parent, merge, c.time(),
+                        generations[i]);
+            }
+        } catch (IOException e) {
+            throw error(e.getMessage());
+        }
+        writeContents(graphFile(), bytes.toByteArray());
+        reload();
+    }
+
+    /** Adds commit C to ORDER after all of its ancestors, recording the
+     *  position of every added commit in INDICES.
+     */
+    private static void sort(Commit c, List<Commit> order,
+                             ObjectIdMap indices) {
+        List<Commit> stack = new ArrayList<>();
+        stack.add(c);
+        while (!stack.isEmpty()) {
+            Commit top = stack.get(stack.size() - 1);
+            ObjectId id = ObjectId.fromHex(top.id());
+            if (indices.containsKey(id)) {
+                stack.remove(stack.size() - 1);
+                continue;
+            }
+            boolean ready = true;
+            for (String p : new String[] {top.parentID(),
+                                          top.mergeParentID()}) {
+                if (p != null && indices.get(p) == ObjectIdMap.MISSING) {
+                    stack.add(Repository.current().commits().get(p));
+                    ready = false;
+                }
+            }
+            if (ready) {
+                stack.remove(stack.size() - 1);
+                indices.put(id, order.size());
+                order.add(top);
+            }
+        }
+    }
+
+    /** Writes a single record to OUT for the commit with the given ID,
+     *  PARENT and MERGE parent indices, TIME and GENERATION.
+     */
+    private static void writeRecord(DataOutputStream out, String id,
+                                    int parent, int merge, long time,
+                                    int generation) throws IOException {
+        ObjectId key = ObjectId.fromHex(id);
+        out.writeLong(key.word0());
+        out.writeLong(key.word1());
+        out.writeInt(key.word2());
+        out.writeInt(parent);
+        out.writeInt(merge);
+        out.writeLong(time);
+        out.writeInt(generation);
+    }
+
+    /** Returns the offset of record I in the file. */
+    private static int offset(int i) {
+        return HEADER + i * RECORD;
+    }
+
+    /** Returns the loaded graph, mapping the graph file into memory
+     *  if needed and regenerating it if it is missing or unreadable.
+     */
+    private static CommitGraph load() {
+        Repository repo = Repository.current();
+        if (repo.graph() == null) {
+            if (!graphFile().exists()) {
+                rebuild();
+            }
+            repo.stamp(graphFile());
+            CommitGraph graph = new CommitGraph();
+            if (graph._buffer.capacity() < HEADER
+                    || graph._buffer.getInt(0) != MAGIC
+                    || graph._buffer.getInt(4) != VERSION) {
+                rebuild();
+                repo.stamp(graphFile());
+                graph = new CommitGraph();
+            }
+            repo.setGraph(graph);
+        }
+        return repo.graph();
+    }
+
+    /** Maps the graph file into memory and indexes its IDs. */
+    private CommitGraph() {
+        Repository.noteRead();
+        try (FileChannel ch = FileChannel.open(graphFile().toPath(),
+                StandardOpenOption.READ)) {
+            _buffer = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+        } catch (IOException e) {
+            throw error(e.getMessage());
+        }
+        _size = Math.max(0, (_buffer.capacity() - HEADER) / RECORD);
+        _ids = new String[_size];
+        _indices = new ObjectIdMap(_size);
+        for (int i = 0; i < _size; i += 1) {
+            _indices.put(_buffer, offset(i), i);
+        }
+    }
+
+    /** The contents of the graph file. */
+    private MappedByteBuffer _buffer;
+
+    /** The number of records in the graph. */
+    private int _size;
+
+    /** The ID of each record whose ID has been asked for as a string. */
+    private String[] _ids;
+
+    /** The record index of each ID. */
+    private ObjectIdMap _indices;
+
+}
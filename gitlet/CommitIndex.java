@@ -0,0 +1,150 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+import static gitlet.Utils.*;
+
+/** A persistent, sorted index of every commit ID in the repository. Each
+ *  record is a full SHA-1 ID followed by a newline, so abbreviated IDs can
+ *  be resolved with a binary search instead of reading every commit. The
+ *  records are followed by the SHA-1 of the records, in the same form, so
+ *  that an index cut short or damaged is noticed and rebuilt; a new index
+ *  only replaces the old one once it is complete.
+ * @author Sam Stahl
+ */
+class CommitIndex {
+
+    /** The file that stores the index. */
+    private static File indexFile() {
+        return join(gitletDir(), "commit-index");
+    }
+
+    /** The width in bytes of a single record of the index. */
+    private static final int RECORD = ID_LENGTH + 1;
+
+    /** Adds the commit ID to the index, keeping it sorted. Rebuilds the
+     *  index first if this repository does not have a sound one.
+     */
+    static void add(String id) {
+        byte[] records = records();
+        int n = records.length / RECORD, lo = 0, hi = n;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = compare(records, mid, id);
+            if (cmp == 0) {
+                return;
+            } else if (cmp < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        write(Arrays.copyOfRange(records, 0, lo * RECORD),
+              (id + "\n").getBytes(StandardCharsets.US_ASCII),
+              Arrays.copyOfRange(records, lo * RECORD, records.length));
+    }
+
+    /** Rewrites the index from the IDs of every stored commit, loose
+     *  or packed, and returns its records.
+     */
+    static byte[] rebuild() {
+        StringBuilder out = new StringBuilder();
+        for (String id : ObjectStore.ids(ObjectStore.COMMIT)) {
+            out.append(id).append('\n');
+        }
+        byte[] records = out.toString().getBytes(StandardCharsets.US_ASCII);
+        write(records);
+        return records;
+    }
+
+    /** Returns the full ID of the only commit whose ID begins with PREFIX,
+     *  or null if there is no such commit. Throws a GitletException if
+     *  more than one commit matches.
+     */
+    static String resolve(String prefix) {
+        byte[] records = records();
+        int n = records.length / RECORD, lo = 0, hi = n;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compare(records, mid, prefix) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        String match = null;
+        for (int i = lo; i < n && i < lo + 2; i += 1) {
+            String id = new String(records, i * RECORD, ID_LENGTH,
+                    StandardCharsets.US_ASCII);
+            if (!id.startsWith(prefix)) {
+                break;
+            } else if (match != null) {
+                throw error("Ambiguous commit id.");
+            }
+            match = id;
+        }
+        return match;
+    }
+
+    /** Returns the records of the index, rebuilding it if it is missing
+     *  or if its length or checksum is wrong.
+     */
+    private static byte[] records() {
+        File f = indexFile();
+        if (f.exists()) {
+            Repository.noteRead();
+            byte[] index = readContents(f);
+            int end = index.length - RECORD;
+            if (end >= 0 && index.length % RECORD == 0
+                && checksum(index, end).equals(new String(index, end,
+                        ID_LENGTH, StandardCharsets.US_ASCII))) {
+                return Arrays.copyOf(index, end);
+            }
+        }
+        return rebuild();
+    }
+
+    /** Replaces the index with one holding the records PARTS, in order,
+     *  and their checksum, writing it to a file of its own first.
+     */
+    private static void write(byte[]... parts) {
+        MessageDigest md = ObjectStore.sha1Digest();
+        for (byte[] part : parts) {
+            md.update(part);
+        }
+        String sum = ObjectId.read(md.digest(), 0).hex() + "\n";
+        File tmp = join(gitletDir(), "commit-index.tmp");
+        Object[] contents = Arrays.copyOf(parts, parts.length + 1,
+                                          Object[].class);
+        contents[parts.length] = sum;
+        writeContents(tmp, contents);
+        try {
+            Files.move(tmp.toPath(), indexFile().toPath(),
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw error(e.getMessage());
+        }
+    }
+
+    /** Returns the SHA-1 of the first LENGTH bytes of INDEX. */
+    private static String checksum(byte[] index, int length) {
+        MessageDigest md = ObjectStore.sha1Digest();
+        md.update(index, 0, length);
+        return ObjectId.read(md.digest(), 0).hex();
+    }
+
+    /** Compares record number I of RECORDS with ID. */
+    private static int compare(byte[] records, int i, String id) {
+        String rec = new String(records, i * RECORD, ID_LENGTH,
+                StandardCharsets.US_ASCII);
+        return rec.compareTo(id);
+    }
+
+}
@@ -0,0 +1,167 @@
+package gitlet;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+
+import static gitlet.Utils.*;
+
+/** Contains the logic needed to keep gitlet resident for a repository,
+ *  serving the commands that Client forwards to it over a Unix domain
+ *  socket in the .gitlet folder, so that they pay for neither starting a
+ *  JVM nor warming its caches. Commands are served one at a time. What a
+ *  command reads is kept for the next one unless another process has
+ *  changed it on disk since; see Repository.begin. Started with
+ *  --fsmonitor, it also runs a filesystem monitor for the working
+ *  directory while it serves; see FsMonitor.
+ *
+ *  A request is the number of arguments as an int followed by each
+ *  argument in modified UTF-8, as written by DataOutputStream. The reply
+ *  is a sequence of frames, each a stream byte (OUT or ERR), the length
+ *  of its data as an int, and the data, ended by closing the connection.
+ * @author Sam Stahl
+ */
+public class DaemonCommand extends Command {
+
+    /** The socket the daemon listens on, relative to the repository. */
+    static final String SOCKET = ".gitlet/daemon.sock";
+
+    /** Marks a reply frame holding standard output. */
+    static final int OUT = 1;
+
+    /** Marks a reply frame holding standard error. */
+    static final int ERR = 2;
+
+    /** Initializes the command with ARGS, which are either daemon,
+     *  optionally followed by --fsmonitor, to start serving, or daemon
+     *  stop, to stop the running daemon.
+     */
+    DaemonCommand(String[] args) {
+        if (!gitletDir().exists()) {
+            System.out.println("Not in an initialized Gitlet directory.");
+            setFailed();
+        } else if (args.length > 2
+                   || args.length == 2 && !args[1].equals("stop")
+                      && !args[1].equals("--fsmonitor")) {
+            System.out.println("Incorrect operands.");
+            setFailed();
+        }
+        _stop = args.length == 2 && args[1].equals("stop");
+        _fsmonitor = args.length == 2 && args[1].equals("--fsmonitor");
+    }
+
+    @Override
+    void execute() {
+        if (failed()) {
+            return;
+        } else if (_stop) {
+            if (!Client.forward(new String[] {"daemon", "stop"})) {
+                System.out.println("No daemon is running.");
+            }
+            return;
+        } else if (Client.forward(new String[] {"daemon"})) {
+            return;
+        }
+        File socket = join(cwd(), SOCKET);
+        socket.delete();
+        FsMonitor monitor = _fsmonitor ? FsMonitor.start() : null;
+        try (ServerSocketChannel server =
+                 ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            server.bind(UnixDomainSocketAddress.of(socket.toPath()));
+            System.out.println("Serving " + cwd() + ".");
+            while (!_stop) {
+                try (SocketChannel client = server.accept()) {
+                    serve(client);
+                }
+            }
+        } catch (IOException e) {
+            throw error(e.getMessage());
+        } finally {
+            socket.delete();
+            if (monitor != null) {
+                monitor.stop();
+            }
+        }
+    }
+
+    /** Reads one request from CLIENT, runs it and sends back its output.
+     *  A command that breaks sends back its error on one line.
+     */
+    private void serve(SocketChannel client) throws IOException {
+        DataInputStream in =
+            new DataInputStream(Channels.newInputStream(client));
+        String[] args = new String[in.readInt()];
+        for (int i = 0; i < args.length; i += 1) {
+            args[i] = in.readUTF();
+        }
+        DataOutputStream reply =
+            new DataOutputStream(Channels.newOutputStream(client));
+        PrintStream out = frames(reply, OUT), err = frames(reply, ERR),
+            oldOut = System.out, oldErr = System.err;
+        System.setOut(out);
+        System.setErr(err);
+        try {
+            if (args.length > 0 && args[0].equals("daemon")) {
+                _stop = args.length == 2 && args[1].equals("stop");
+                System.out.println(_stop ? "Daemon stopped."
+                                   : "A daemon is already running.");
+            } else {
+                Repository.current().begin();
+                Main.run(args);
+            }
+        } catch (RuntimeException e) {
+            System.err.println(e.getMessage());
+            Repository.freshContext();
+        } finally {
+            out.flush();
+            err.flush();
+            System.setOut(oldOut);
+            System.setErr(oldErr);
+            Repository.current().seal();
+        }
+    }
+
+    /** Returns a stream that sends everything written to it to REPLY in
+     *  frames marked with STREAM.
+     */
+    private static PrintStream frames(DataOutputStream reply, int stream) {
+        OutputStream framed = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[] {(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len)
+                throws IOException {
+                reply.writeByte(stream);
+                reply.writeInt(len);
+                reply.write(b, off, len);
+            }
+
+            @Override
+            public void flush() throws IOException {
+                reply.flush();
+            }
+        };
+        return new PrintStream(framed, true, StandardCharsets.UTF_8);
+    }
+
+    /** True if the daemon is to stop, or if this command only stops
+     *  the running daemon.
+     */
+    private boolean _stop;
+
+    /** True if a filesystem monitor is to run while the daemon serves. */
+    private boolean _fsmonitor;
+
+}
@@ -0,0 +1,171 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/** Delta compression of one object against another. A delta starts with
+ *  the lengths of its base and of its result as varints, followed by a
+ *  sequence of instructions: a byte N from 1 to 127 inserts the N bytes
+ *  that follow it, and the byte 128 followed by two varints copies that
+ *  many bytes (the second varint) from that offset (the first) of the
+ *  base.
+ * @author Sam Stahl
+ */
+class Delta {
+
+    /** The length of the blocks of the base that matches start from. */
+    private static final int BLOCK = 16;
+
+    /** The largest number of bytes a single insert instruction holds. */
+    private static final int MAX_INSERT = 127;
+
+    /** The instruction byte for a copy. */
+    private static final int COPY = 128;
+
+    /** Returns a delta that turns BASE into TARGET, or null if BASE is
+     *  too short to be worth deltifying against.
+     */
+    static byte[] encode(byte[] base, byte[] target) {
+        if (base.length < BLOCK || target.length < BLOCK) {
+            return null;
+        }
+        Map<Integer, Integer> blocks = new HashMap<>();
+        for (int j = 0; j + BLOCK <= base.length; j += BLOCK) {
+            blocks.putIfAbsent(hash(base, j), j);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeVarint(out, base.length);
+        writeVarint(out, target.length);
+        int literal = 0, i = 0;
+        while (i + BLOCK <= target.length) {
+            Integer found = blocks.get(hash(target, i));
+            if (found == null || !matches(base, found, target, i, BLOCK)) {
+                i += 1;
+                continue;
+            }
+            int j = found, len = BLOCK;
+            while (j + len < base.length && i + len < target.length
+                   && base[j + len] == target[i + len]) {
+                len += 1;
+            }
+            while (j > 0 && i > literal && base[j - 1] == target[i - 1]) {
+                j -= 1;
+                i -= 1;
+                len += 1;
+            }
+            insert(out, target, literal, i);
+            out.write(COPY);
+            writeVarint(out, j);
+            writeVarint(out, len);
+            i += len;
+            literal = i;
+        }
+        insert(out, target, literal, target.length);
+        return out.toByteArray();
+    }
+
+    /** Returns the result of applying DELTA to BASE. */
+    static byte[] apply(byte[] base, byte[] delta) {
+        int[] pos = {0};
+        if (readVarint(delta, pos) != base.length) {
+            throw Utils.error("Delta does not match its base.");
+        }
+        byte[] result = new byte[(int) readVarint(delta, pos)];
+        int n = 0;
+        while (pos[0] < delta.length) {
+            int op = delta[pos[0]] & 0xff;
+            pos[0] += 1;
+            if (op == COPY) {
+                int offset = (int) readVarint(delta, pos),
+                    len = (int) readVarint(delta, pos);
+                System.arraycopy(base, offset, result, n, len);
+                n += len;
+            } else {
+                System.arraycopy(delta, pos[0], result, n, op);
+                pos[0] += op;
+                n += op;
+            }
+        }
+        if (n != result.length) {
+            throw Utils.error("Corrupt delta.");
+        }
+        return result;
+    }
+
+    /** Writes insert instructions to OUT for TARGET[FROM..TO). */
+    private static void insert(ByteArrayOutputStream out, byte[] target,
+                               int from, int to) {
+        while (from < to) {
+            int n = Math.min(MAX_INSERT, to - from);
+            out.write(n);
+            out.write(target, from, n);
+            from += n;
+        }
+    }
+
+    /** Returns true if the LEN bytes of A at I equal those of B at J. */
+    private static boolean matches(byte[] a, int i, byte[] b, int j,
+                                   int len) {
+        for (int k = 0; k < len; k += 1) {
+            if (a[i + k] != b[j + k]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Returns a hash of the BLOCK bytes of DATA starting at I. */
+    private static int hash(byte[] data, int i) {
+        int h = 0;
+        for (int k = i; k < i + BLOCK; k += 1) {
+            h = 31 * h + data[k];
+        }
+        return h;
+    }
+
+    /** Writes the non-negative VALUE to OUT as an unsigned LEB128
+     *  varint.
+     */
+    static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7fL) != 0) {
+            out.write((int) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    /** Reads a varint from DATA at POS[0], advancing POS[0] past it. */
+    static long readVarint(byte[] data, int[] pos) {
+        long value = 0;
+        for (int shift = 0;; shift += 7) {
+            int b = data[pos[0]] & 0xff;
+            pos[0] += 1;
+            value |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+
+    /** Writes S to OUT as its length in UTF-8 bytes as a varint, followed
+     *  by those bytes.
+     */
+    static void writeString(ByteArrayOutputStream out, String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        writeVarint(out, bytes.length);
+        out.writeBytes(bytes);
+    }
+
+    /** Reads a string written by writeString from DATA at POS[0],
+     *  advancing POS[0] past it.
+     */
+    static String readString(byte[] data, int[] pos) {
+        int length = (int) readVarint(data, pos);
+        String s = new String(data, pos[0], length, StandardCharsets.UTF_8);
+        pos[0] += length;
+        return s;
+    }
+
+}
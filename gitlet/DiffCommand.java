@@ -0,0 +1,426 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import static gitlet.Utils.*;
+
+/** Contains the logic needed to show the changes between two versions of
+ *  the tracked files: the index and the working directory if no commit
+ *  is named, a commit and the working directory if one is, and two
+ *  commits if two are. Files whose blob IDs match on both sides are
+ *  skipped without being read, and files of the working directory are
+ *  only read if their stat data shows they changed; see Stage.unstaged.
+ *  The changes are printed as unified diffs, or, with --stat, as the
+ *  number of lines each file gained and lost, which are counted without
+ *  making any hunks. When many files changed, they are diffed on
+ *  -Dgitlet.threads threads a window at a time and printed in order.
+ *  Each thread reads the versions of the files it diffs itself, as a
+ *  worker of the command's repository context (see Repository.work), as
+ *  the threads of a merge read the versions they merge.
+ * @author Sam Stahl
+ */
+public class DiffCommand extends Command {
+
+    /** The number of unchanged lines shown around each change. */
+    static final int CONTEXT = 3;
+
+    /** The fewest files worth diffing on more than one thread. */
+    private static final int PARALLEL = 8;
+
+    /** The number of files diffed before their diffs are printed. */
+    private static final int WINDOW = 256;
+
+    /** The width of the lines printed by --stat. */
+    private static final int STAT_WIDTH = 80;
+
+    /** The line printed after a line that does not end in a newline. */
+    private static final byte[] NO_NEWLINE =
+        "\n\\ No newline at end of file\n".getBytes(StandardCharsets.UTF_8);
+
+    /** Initializes the command with ARGS, which are diff, optionally
+     *  --stat, up to two branches or commit IDs, and optionally -- and
+     *  the paths to limit the diff to. A -- with no paths after it
+     *  leaves the diff unlimited, as in git.
+     */
+    DiffCommand(String[] args) {
+        if (!gitletDir().exists()) {
+            System.out.println("Not in an initialized Gitlet directory.");
+            setFailed();
+            return;
+        }
+        int k = 1;
+        if (k < args.length && args[k].equals("--stat")) {
+            _stat = true;
+            k += 1;
+        }
+        for (; k < args.length && !args[k].equals("--"); k += 1) {
+            _revisions.add(args[k]);
+        }
+        if (k + 1 < args.length) {
+            _paths = new HashSet<>();
+            for (k += 1; k < args.length; k += 1) {
+                _paths.add(join(cwd(), args[k]));
+            }
+        }
+        if (_revisions.size() > 2) {
+            System.out.println("Incorrect operands.");
+            setFailed();
+        }
+    }
+
+    @Override
+    void execute() {
+        if (failed()) {
+            return;
+        }
+        long start = System.nanoTime();
+        List<Commit> commits = new ArrayList<>();
+        for (String rev : _revisions) {
+            String id = resolveRevision(rev);
+            if (id == null) {
+                System.out.println("No commit with that id exists.");
+                return;
+            }
+            commits.add(getCommitByID(id));
+        }
+        Repository repo = Repository.current();
+        _before = commits.isEmpty() ? staged(repo.stage())
+            : commits.get(0).getContents();
+        _after = commits.size() == 2 ? commits.get(1).getContents()
+            : working(repo);
+        _files = changed();
+        int threads = threads();
+        ObjectStore.packs();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        _patches = new byte[_files.length][];
+        _counts = new int[_files.length][];
+        OutputStream out = new BufferedOutputStream(System.out);
+        try {
+            for (int lo = 0; lo < _files.length; lo += WINDOW) {
+                int hi = Math.min(_files.length, lo + WINDOW);
+                if (threads > 1 && hi - lo >= PARALLEL) {
+                    pool.invoke(new Task(repo, lo, hi));
+                } else {
+                    for (int i = lo; i < hi; i += 1) {
+                        diff(i);
+                    }
+                }
+                for (int i = lo; i < hi && !_stat; i += 1) {
+                    out.write(_patches[i]);
+                    _patches[i] = null;
+                }
+            }
+            if (_stat) {
+                printStat(out);
+            }
+            out.flush();
+        } catch (IOException e) {
+            throw error(e.getMessage());
+        } finally {
+            pool.shutdown();
+        }
+        if (System.getProperty("gitlet.stats") != null) {
+            System.err.printf("diff: %d files differ, %d read from the "
+                    + "working directory, %d threads, %.1f ms%n",
+                    _files.length, _onDisk.size(), threads,
+                    (System.nanoTime() - start) / 1e6);
+        }
+    }
+
+    /** Returns the files STAGE lists, with their staged blobs. */
+    private static Map<File, String> staged(Stage stage) {
+        Map<File, String> result = new HashMap<>();
+        for (File f : stage.files()) {
+            result.put(f, stage.blob(f));
+        }
+        return result;
+    }
+
+    /** Returns the files in the working directory of REPO that its index
+     *  lists, with their staged blobs, less those deleted since. The ones
+     *  changed since they were staged are put in _onDisk, to be read from
+     *  the working directory instead.
+     */
+    private Map<File, String> working(Repository repo) {
+        Stage stage = repo.stage();
+        Map<File, String> result = staged(stage);
+        FsMonitor.Changes monitor = repo.monitor();
+        Map<File, String> changes = stage.unstaged(threads(),
+                monitor == null ? null : monitor.files());
+        for (Map.Entry<File, String> e : changes.entrySet()) {
+            if (e.getValue().equals("deleted")) {
+                result.remove(e.getKey());
+            } else {
+                _onDisk.add(e.getKey());
+            }
+        }
+        return result;
+    }
+
+    /** Returns the files that differ between _before and _after, among
+     *  those in _paths if it is not null, sorted by path, and leaves
+     *  their paths in _names. A file changed in the working directory is
+     *  known to differ from the index, but is hashed to compare it with a
+     *  commit.
+     */
+    private File[] changed() {
+        Map<String, File> result = new TreeMap<>();
+        Set<File> all = new HashSet<>(_before.keySet());
+        all.addAll(_after.keySet());
+        for (File f : all) {
+            if (_paths != null && !_paths.contains(f)) {
+                continue;
+            } else if (_onDisk.contains(f) ? _revisions.isEmpty()
+                       || !ObjectStore.hash(f).equals(_before.get(f))
+                       : !contentsMatch(_before.get(f), _after.get(f))) {
+                result.put(relativePath(f), f);
+            }
+        }
+        _names = result.keySet().toArray(new String[0]);
+        return result.values().toArray(new File[0]);
+    }
+
+    /** Reads both versions of the Ith file and diffs them, recording its
+     *  patch or, with --stat, the number of lines it lost and gained, or
+     *  null if it is binary.
+     */
+    private void diff(int i) throws IOException {
+        File f = _files[i];
+        LineDiff.Lines a = new LineDiff.Lines(contents(_before.get(f))),
+            b = new LineDiff.Lines(_onDisk.contains(f) ? readContents(f)
+                                   : contents(_after.get(f)));
+        boolean binary = a.binary() || b.binary();
+        if (_stat) {
+            _counts[i] = binary ? null : LineDiff.count(a, b);
+            return;
+        }
+        String path = _names[i],
+            from = _before.containsKey(f) ? "a/" + path : "/dev/null",
+            to = _after.containsKey(f) ? "b/" + path : "/dev/null";
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        print(out, "diff --git a/" + path + " b/" + path + "\n");
+        if (binary) {
+            print(out, "Binary files " + from + " and " + to + " differ\n");
+        } else {
+            print(out, "--- " + from + "\n+++ " + to + "\n");
+            hunks(out, a, b, LineDiff.diff(a, b));
+        }
+        _patches[i] = out.toByteArray();
+    }
+
+    /** Returns the contents of the blob with the given ID, or nothing if
+     *  ID is null.
+     */
+    private static byte[] contents(String id) {
+        return id == null ? new byte[0] : ObjectStore.read(id);
+    }
+
+    /** Writes to OUT the hunks showing EDITS, which turn A into B, each
+     *  with up to CONTEXT unchanged lines around its changes. Edits that
+     *  close together share a hunk.
+     */
+    private static void hunks(OutputStream out, LineDiff.Lines a,
+                              LineDiff.Lines b, List<LineDiff.Edit> edits)
+        throws IOException {
+        for (int i = 0; i < edits.size();) {
+            int j = i;
+            while (j + 1 < edits.size() && edits.get(j + 1)._aStart
+                   - edits.get(j)._aEnd <= 2 * CONTEXT) {
+                j += 1;
+            }
+            LineDiff.Edit first = edits.get(i), last = edits.get(j);
+            int aFrom = Math.max(0, first._aStart - CONTEXT),
+                aTo = Math.min(a.size(), last._aEnd + CONTEXT),
+                bFrom = first._bStart - (first._aStart - aFrom),
+                bTo = last._bEnd + (aTo - last._aEnd);
+            print(out, "@@ -" + range(aFrom, aTo) + " +" + range(bFrom, bTo)
+                  + " @@\n");
+            int pos = aFrom;
+            for (int k = i; k <= j; k += 1) {
+                LineDiff.Edit e = edits.get(k);
+                lines(out, ' ', a, pos, e._aStart);
+                lines(out, '-', a, e._aStart, e._aEnd);
+                lines(out, '+', b, e._bStart, e._bEnd);
+                pos = e._aEnd;
+            }
+            lines(out, ' ', a, pos, aTo);
+            i = j + 1;
+        }
+    }
+
+    /** Returns lines [FROM, TO) as a hunk header shows them: the first
+     *  line's number and the number of lines, which is left out if it is
+     *  one. An empty range is shown after the line before it.
+     */
+    private static String range(int from, int to) {
+        if (to - from == 1) {
+            return Integer.toString(from + 1);
+        }
+        return (to == from ? from : from + 1) + "," + (to - from);
+    }
+
+    /** Writes lines [FROM, TO) of TEXT to OUT, each after PREFIX. */
+    private static void lines(OutputStream out, char prefix,
+                              LineDiff.Lines text, int from, int to)
+        throws IOException {
+        for (int i = from; i < to; i += 1) {
+            out.write(prefix);
+            text.write(out, i, i + 1);
+            if (!text.complete(i + 1)) {
+                out.write(NO_NEWLINE);
+            }
+        }
+    }
+
+    /** Writes to OUT a line for each changed file with the number of
+     *  lines it gained and lost and a bar of +'s and -'s as long as
+     *  that, scaled to fit, followed by the totals.
+     */
+    private void printStat(OutputStream out) throws IOException {
+        int nameWidth = 0, most = 0, insertions = 0, deletions = 0;
+        boolean binary = false;
+        for (int i = 0; i < _files.length; i += 1) {
+            nameWidth = Math.max(nameWidth, _names[i].length());
+            if (_counts[i] == null) {
+                binary = true;
+            } else {
+                most = Math.max(most, _counts[i][0] + _counts[i][1]);
+                deletions += _counts[i][0];
+                insertions += _counts[i][1];
+            }
+        }
+        int countWidth = Math.max(binary ? 3 : 1,
+                                  Integer.toString(most).length()),
+            barWidth = Math.max(1, STAT_WIDTH - nameWidth - countWidth - 5);
+        for (int i = 0; i < _files.length; i += 1) {
+            String name = _names[i];
+            if (_counts[i] == null) {
+                print(out, String.format(" %-" + nameWidth + "s | %"
+                        + countWidth + "s%n", name, "Bin"));
+                continue;
+            }
+            int del = _counts[i][0], ins = _counts[i][1];
+            if (most > barWidth) {
+                del = scale(del, barWidth, most);
+                ins = scale(ins, barWidth, most);
+            }
+            print(out, String.format(" %-" + nameWidth + "s | %"
+                    + countWidth + "d %s%s%n", name,
+                    _counts[i][0] + _counts[i][1], "+".repeat(ins),
+                    "-".repeat(del)));
+        }
+        if (_files.length > 0) {
+            print(out, String.format(" %d file%s changed%s%s%n",
+                    _files.length, _files.length == 1 ? "" : "s",
+                    insertions == 0 ? "" : String.format(", %d insertion%s(+)",
+                            insertions, insertions == 1 ? "" : "s"),
+                    deletions == 0 ? "" : String.format(", %d deletion%s(-)",
+                            deletions, deletions == 1 ? "" : "s")));
+        }
+    }
+
+    /** Returns N scaled from a bar as long as MOST to one as long as
+     *  WIDTH, keeping at least one mark for any change.
+     */
+    private static int scale(int n, int width, int most) {
+        return n == 0 ? 0 : Math.max(1, (int) ((long) n * width / most));
+    }
+
+    /** Writes TEXT to OUT. */
+    private static void print(OutputStream out, String text)
+        throws IOException {
+        out.write(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Diffs a range of the changed files, splitting it among threads
+     *  while it holds more than one.
+     */
+    private class Task extends RecursiveAction {
+
+        /** Diffs _files[LO .. HI-1] as workers of the command running in
+         *  REPO.
+         */
+        Task(Repository repo, int lo, int hi) {
+            _repo = repo;
+            _lo = lo;
+            _hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (_hi - _lo > 1) {
+                int mid = (_lo + _hi) >>> 1;
+                invokeAll(new Task(_repo, _lo, mid),
+                          new Task(_repo, mid, _hi));
+                return;
+            }
+            Repository.work(_repo, new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        diff(_lo);
+                    } catch (IOException e) {
+                        throw error(e.getMessage());
+                    }
+                }
+            });
+        }
+
+        /** The context of the command the files are diffed for. */
+        private final Repository _repo;
+
+        /** The first of the files this task diffs. */
+        private final int _lo;
+
+        /** The index just past the last file this task diffs. */
+        private final int _hi;
+
+    }
+
+    /** True if only the number of lines changed is to be shown. */
+    private boolean _stat;
+
+    /** The branches or commit IDs to compare. */
+    private final List<String> _revisions = new ArrayList<>();
+
+    /** The files to limit the diff to, or null for every file. */
+    private Set<File> _paths;
+
+    /** The files on the old side, with their blobs. */
+    private Map<File, String> _before;
+
+    /** The files on the new side, with their blobs. */
+    private Map<File, String> _after;
+
+    /** The files on the new side to read from the working directory. */
+    private final Set<File> _onDisk = new HashSet<>();
+
+    /** The files that differ, sorted by path. */
+    private File[] _files;
+
+    /** The path of each file that differs. */
+    private String[] _names;
+
+    /** The patch of each file that differs. */
+    private byte[][] _patches;
+
+    /** The lines each file that differs lost and gained, or null if it
+     *  is binary.
+     */
+    private int[][] _counts;
+
+}
@@ -1,6 +1,6 @@
 package gitlet;
 
-import static gitlet.Utils.GITLET;
+import static gitlet.Utils.gitletDir;
 
 /** Contains the logic needed to find a commit from it's message.
  * @author Sam Stahl
@@ -9,7 +9,7 @@ public class FindCommand extends Command {
 
     /** Initializes the command using ARGS to set _message. */
     FindCommand(String[] args) {
-        if (!GITLET.exists()) {
+        if (!gitletDir().exists()) {
             System.out.println("Not in an initialized Gitlet directory.");
             setFailed();
         } else if (args.length != 2) {
@@ -0,0 +1,423 @@
+package gitlet;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static gitlet.Utils.*;
+
+/** A filesystem monitor, which a long-lived gitlet process (the daemon,
+ *  started with --fsmonitor) runs to record in a journal in the .gitlet
+ *  folder the path of every file of the working directory, or of any
+ *  folder in it, that is created, changed or deleted. Each folder is
+ *  watched, and a folder created while the monitor runs is watched from
+ *  then on, with every file already in it recorded as created. Commands
+ *  that would otherwise stat every file then need only look at the files
+ *  named in the journal since the token that status last left, along
+ *  with those that status found changed or untracked then, and at the
+ *  files under any folder named, so that a folder nothing happened in is
+ *  skipped whole.
+ *
+ *  The journal starts with a line naming its generation, which is new
+ *  each time a monitor starts and each time the journal grows past
+ *  JOURNAL_LIMIT and is started over. Each further line is a changed
+ *  file's path after a +, a * if the monitor lost events, or the name of
+ *  a cookie after a :. A command asking what changed first creates a
+ *  cookie in the cookie folder and waits until the monitor acknowledges
+ *  it, so that the journal covers everything done to the working
+ *  directory before the command started. A command that cannot trust the
+ *  journal, because there is none, its generation does not match the
+ *  token, it lost events or the monitor does not answer, falls back to
+ *  examining every file; the journal is left for the next command.
+ * @author Sam Stahl
+ */
+class FsMonitor {
+
+    /** The name of the journal in the .gitlet folder. */
+    static final String JOURNAL = "fsmonitor";
+
+    /** The name of the token file in the .gitlet folder. */
+    static final String TOKEN = "fsmonitor-token";
+
+    /** The name of the cookie folder in the .gitlet folder. */
+    static final String COOKIES = "fsmonitor-cookies";
+
+    /** The time in milliseconds a command waits for the monitor to
+     *  acknowledge its cookie.
+     */
+    private static final long TIMEOUT = 1000;
+
+    /** The size in bytes past which the monitor starts a new generation
+     *  of the journal.
+     */
+    private static final long JOURNAL_LIMIT = 1 << 20;
+
+    /** A monitor for the repository whose .gitlet folder is GITLET,
+     *  which watches DIR.
+     */
+    private FsMonitor(File dir, File gitlet) {
+        _dir = dir;
+        _gitlet = gitlet.toPath();
+        _journal = join(gitlet, JOURNAL);
+        _cookies = join(gitlet, COOKIES);
+    }
+
+    /** Starts a monitor for the current repository, in a thread of its
+     *  own, and returns it.
+     */
+    static FsMonitor start() {
+        FsMonitor monitor = new FsMonitor(cwd(), gitletDir());
+        monitor._cookies.mkdir();
+        try {
+            monitor._watcher = FileSystems.getDefault().newWatchService();
+            monitor.register(monitor._dir.toPath(), null);
+            monitor._cookies.toPath().register(monitor._watcher,
+                    StandardWatchEventKinds.ENTRY_CREATE);
+            monitor.rotate();
+        } catch (IOException e) {
+            throw error(e.getMessage());
+        }
+        Thread thread = new Thread("fsmonitor") {
+            @Override
+            public void run() {
+                monitor.watch();
+            }
+        };
+        thread.setDaemon(true);
+        thread.start();
+        return monitor;
+    }
+
+    /** Starts a new generation of the journal, which replaces the old
+     *  journal whole, and appends to it from then on. The first command
+     *  to read the new journal looks at every file, as its token names
+     *  the old generation.
+     */
+    private void rotate() throws IOException {
+        String generation = Long.toHexString(System.nanoTime())
+            + Long.toHexString(System.currentTimeMillis());
+        File tmp = new File(_journal.getPath() + ".tmp");
+        writeContents(tmp, generation + "\n");
+        Files.move(tmp.toPath(), _journal.toPath(),
+                   StandardCopyOption.REPLACE_EXISTING,
+                   StandardCopyOption.ATOMIC_MOVE);
+        if (_out != null) {
+            _out.close();
+        }
+        _out = new FileOutputStream(_journal, true);
+    }
+
+    /** Stops this monitor and deletes its journal, so that no command
+     *  trusts it any longer.
+     */
+    void stop() {
+        _journal.delete();
+        try {
+            _watcher.close();
+            _out.close();
+        } catch (IOException e) {
+            throw error(e.getMessage());
+        }
+    }
+
+    /** Records events in the journal until the monitor is stopped. After
+     *  each batch of events, any events already pending are recorded
+     *  before cookies are acknowledged, since they may have happened
+     *  before the cookies were made. Once the journal passes
+     *  JOURNAL_LIMIT, a new generation of it is started, after the
+     *  cookies are acknowledged in the old one, which the commands
+     *  waiting for them are reading.
+     */
+    private void watch() {
+        try {
+            while (true) {
+                List<String> cookies = new ArrayList<>();
+                StringBuilder lines = new StringBuilder();
+                for (WatchKey key = _watcher.take(); key != null;
+                     key = _watcher.poll()) {
+                    record(key, lines, cookies);
+                }
+                for (String cookie : cookies) {
+                    lines.append(':').append(cookie).append('\n');
+                }
+                append(lines.toString());
+                if (_journal.length() > JOURNAL_LIMIT) {
+                    rotate();
+                }
+            }
+        } catch (ClosedWatchServiceException | InterruptedException e) {
+            return;
+        } catch (IOException e) {
+            _journal.delete();
+        }
+    }
+
+    /** Adds the events of KEY to LINES, and the cookies they name to
+     *  COOKIES, and makes KEY ready for more events. A folder created is
+     *  watched too.
+     */
+    private void record(WatchKey key, StringBuilder lines,
+                        List<String> cookies) throws IOException {
+        Path dir = (Path) key.watchable();
+        boolean cookie = dir.equals(_cookies.toPath());
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                lines.append("*\n");
+            } else if (cookie) {
+                cookies.add(event.context().toString());
+            } else {
+                Path p = dir.resolve((Path) event.context());
+                if (p.equals(_gitlet)) {
+                    continue;
+                }
+                lines.append('+').append(relative(p)).append('\n');
+                if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE
+                    && Files.isDirectory(p, LinkOption.NOFOLLOW_LINKS)) {
+                    register(p, lines);
+                }
+            }
+        }
+        key.reset();
+    }
+
+    /** Watches the folder DIR and every folder under it but .gitlet. If
+     *  LINES is not null, the path of every file found is added to it, as
+     *  the files may have been made before the folder was watched.
+     */
+    private void register(Path dir, StringBuilder lines) throws IOException {
+        Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path d,
+                    BasicFileAttributes attrs) throws IOException {
+                if (d.equals(_gitlet)) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                d.register(_watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                           StandardWatchEventKinds.ENTRY_DELETE,
+                           StandardWatchEventKinds.ENTRY_MODIFY);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path f,
+                    BasicFileAttributes attrs) {
+                if (lines != null) {
+                    lines.append('+').append(relative(f)).append('\n');
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path f, IOException e) {
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /** Returns the path of P relative to the working directory, with its
+     *  components separated by slashes.
+     */
+    private String relative(Path p) {
+        return _dir.toPath().relativize(p).toString()
+            .replace(File.separatorChar, '/');
+    }
+
+    /** Adds TEXT to the end of the journal. */
+    private void append(String text) throws IOException {
+        if (!text.isEmpty()) {
+            _out.write(text.getBytes(StandardCharsets.UTF_8));
+            _out.flush();
+        }
+    }
+
+    /** Records in the journal, if a monitor is running, that file F must
+     *  be looked at again although it did not change, because its entry
+     *  in the index did.
+     */
+    static void touch(File f) {
+        File journal = join(gitletDir(), JOURNAL);
+        if (!journal.exists()) {
+            return;
+        }
+        try (FileOutputStream out = new FileOutputStream(journal, true)) {
+            out.write(("+" + relativePath(f) + "\n")
+                      .getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw error(e.getMessage());
+        }
+    }
+
+    /** Returns what changed in the working directory of the current
+     *  repository since the token status last left, or null if no monitor
+     *  is running. The result names no files if the journal cannot be
+     *  trusted, but can still be saved as the next token.
+     */
+    static Changes changes() {
+        File journal = join(gitletDir(), JOURNAL),
+            cookies = join(gitletDir(), COOKIES);
+        if (!journal.exists()) {
+            return null;
+        }
+        File cookie = join(cookies, "cookie-" + ProcessHandle.current().pid()
+                + "-" + System.nanoTime());
+        try (RandomAccessFile in = new RandomAccessFile(journal, "r")) {
+            String generation = in.readLine();
+            if (generation == null) {
+                return null;
+            }
+            writeContents(cookie, "");
+            Token token = Token.read(generation);
+            long start = token == null ? in.getFilePointer() : token._offset;
+            in.seek(Math.min(start, in.length()));
+            Set<String> names = new HashSet<>();
+            boolean lost = token == null || start > in.length();
+            long deadline = System.currentTimeMillis() + TIMEOUT;
+            while (true) {
+                String line = in.readLine();
+                if (line == null) {
+                    if (System.currentTimeMillis() > deadline) {
+                        return null;
+                    }
+                    Thread.sleep(1);
+                    continue;
+                }
+                line = new String(line.getBytes(StandardCharsets.ISO_8859_1),
+                                  StandardCharsets.UTF_8);
+                if (line.equals(":" + cookie.getName())) {
+                    break;
+                } else if (line.equals("*")) {
+                    lost = true;
+                } else if (line.startsWith("+")) {
+                    names.add(line.substring(1));
+                }
+            }
+            Changes changes = new Changes(generation, in.getFilePointer());
+            if (!lost) {
+                changes._files = new HashSet<>();
+                for (String name : names) {
+                    changes._files.add(join(cwd(), name));
+                }
+                for (String name : token._names) {
+                    changes._files.add(join(cwd(), name));
+                }
+            }
+            return changes;
+        } catch (IOException | InterruptedException e) {
+            return null;
+        } finally {
+            cookie.delete();
+        }
+    }
+
+    /** What changed in the working directory since the last token. */
+    static class Changes {
+
+        /** Changes found in the journal of the given GENERATION, read up
+         *  to OFFSET.
+         */
+        Changes(String generation, long offset) {
+            _generation = generation;
+            _offset = offset;
+        }
+
+        /** Returns the files that may have changed, or null if any may
+         *  have.
+         */
+        Set<File> files() {
+            return _files;
+        }
+
+        /** Saves the next token, which is where these changes were read up
+         *  to, along with FILES, which are the files found changed or
+         *  untracked then and so must be looked at again next time.
+         */
+        void save(Iterable<File> files) {
+            StringBuilder token = new StringBuilder();
+            token.append(_generation).append('\n').append(_offset)
+                .append('\n');
+            for (File f : files) {
+                token.append(relativePath(f)).append('\n');
+            }
+            writeContents(join(gitletDir(), TOKEN), token.toString());
+        }
+
+        /** The generation of the journal. */
+        private final String _generation;
+
+        /** The offset in the journal up to which it was read. */
+        private final long _offset;
+
+        /** The files that may have changed, or null if any may have. */
+        private Set<File> _files;
+
+    }
+
+    /** The token status left, marking how far it read the journal. */
+    private static class Token {
+
+        /** Returns the token, or null if there is none for the journal of
+         *  the given GENERATION.
+         */
+        static Token read(String generation) {
+            File f = join(gitletDir(), TOKEN);
+            if (!f.exists()) {
+                return null;
+            }
+            String[] lines = readContentsAsString(f).split("\n");
+            if (lines.length < 2 || !lines[0].equals(generation)) {
+                return null;
+            }
+            Token token = new Token();
+            token._offset = Long.parseLong(lines[1]);
+            for (int i = 2; i < lines.length; i += 1) {
+                token._names.add(lines[i]);
+            }
+            return token;
+        }
+
+        /** The offset in the journal up to which status read it. */
+        private long _offset;
+
+        /** The names of the files status found changed or untracked. */
+        private final List<String> _names = new ArrayList<>();
+
+    }
+
+    /** The working directory watched. */
+    private final File _dir;
+
+    /** The .gitlet folder, which is not watched. */
+    private final Path _gitlet;
+
+    /** The journal. */
+    private final File _journal;
+
+    /** The folder commands make cookies in. */
+    private final File _cookies;
+
+    /** The watch service reporting events. */
+    private WatchService _watcher;
+
+    /** The stream appending to the journal. */
+    private FileOutputStream _out;
+
+}
@@ -1,6 +1,6 @@
 package gitlet;
 
-import static gitlet.Utils.GITLET;
+import static gitlet.Utils.gitletDir;
 
 /** Contains the logic needed to log every commit.
  * @author Sam Stahl
@@ -11,7 +11,7 @@ public class GlobalLogCommand extends Command {
      * there are no other arguments.
      */
     GlobalLogCommand(String[] args) {
-        if (!GITLET.exists()) {
+        if (!gitletDir().exists()) {
             System.out.println("Not in an initialized Gitlet directory.");
             setFailed();
         } else if (args.length != 1) {
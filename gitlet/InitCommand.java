@@ -1,9 +1,6 @@
 package gitlet;
 
-import java.io.File;
-import java.io.IOException;
-
-import static gitlet.Utils.GITLET;
+import static gitlet.Utils.cwd;
 
 /** The command for initializing a Gitlet repository.
  *  @author Sam Stahl
@@ -17,31 +14,6 @@ public class InitCommand extends Command {
         if (args.length != 1) {
             setFailed();
             System.out.println("Incorrect operands.");
-        } else if (GITLET.exists()) {
-            setFailed();
-            System.out.println("A Gitlet version-control system already "
-                    + "exists in the current directory.");
-        }
-    }
-
-    /** Creates every file and folder needed for using a gitlet repository. */
-    private void setUp() {
-        GITLET.mkdir();
-        Utils.join(GITLET, "commits").mkdir();
-        File stage = Utils.join(GITLET, "stage");
-        stage.mkdir();
-        Utils.join(stage, "add").mkdir();
-        Utils.join(stage, "rm").mkdir();
-        File branches = Utils.join(GITLET, "branches");
-        branches.mkdir();
-        File files = Utils.join(GITLET, "files");
-        files.mkdir();
-        try {
-            File head = Utils.join(GITLET, "HEAD.txt");
-            head.createNewFile();
-            Utils.writeContents(head, "master");
-        } catch (IOException e) {
-            throw Utils.error(e.getMessage());
         }
     }
 
@@ -50,8 +22,7 @@ public class InitCommand extends Command {
         if (failed()) {
             return;
         }
-        setUp();
-        Commit.initialCommit();
+        Repository.init(cwd());
     }
 
 }
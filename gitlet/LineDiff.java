@@ -0,0 +1,465 @@
+package gitlet;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/** A line diff between two texts, found with the linear-space version of
+ *  Myers' algorithm: the middle snake of the shortest edit script is
+ *  found by searching from both ends at once, and the two halves on
+ *  either side of it are diffed in turn, so only two vectors of
+ *  diagonals are kept however far apart the texts are.
+ *
+ *  Before the search, lines are replaced by small numbers, one for each
+ *  distinct line, and the lines that appear in only one of the texts are
+ *  set aside as changed, since they cannot be matched. The lines the texts
+ *  share at their start and end are left out before that. On large
+ *  generated files this leaves the search only the few lines around the
+ *  changes, and common lines at either end of each part it splits the
+ *  rest into are skipped in the same way.
+ * @author Sam Stahl
+ */
+class LineDiff {
+
+    /** Returns the edits that turn the lines of A into those of B, in
+     *  order.
+     */
+    static List<Edit> diff(Lines a, Lines b) {
+        return new LineDiff(a, b).edits();
+    }
+
+    /** Returns the number of lines of A deleted and the number of lines
+     *  of B inserted by the edits that turn A into B, without making the
+     *  edits.
+     */
+    static int[] count(Lines a, Lines b) {
+        LineDiff diff = new LineDiff(a, b);
+        return new int[] {count(diff._changedA), count(diff._changedB)};
+    }
+
+    /** Returns the number of lines marked in CHANGED. */
+    private static int count(boolean[] changed) {
+        int n = 0;
+        for (boolean c : changed) {
+            if (c) {
+                n += 1;
+            }
+        }
+        return n;
+    }
+
+    /** A diff of the lines of A against those of B. */
+    private LineDiff(Lines a, Lines b) {
+        int head = 0, tail = 0;
+        while (head < a.size() && head < b.size() && a.same(head, b, head)) {
+            head += 1;
+        }
+        while (tail < a.size() - head && tail < b.size() - head
+               && a.same(a.size() - 1 - tail, b, b.size() - 1 - tail)) {
+            tail += 1;
+        }
+        _head = head;
+        Numbering numbers =
+            new Numbering(a.size() + b.size() - 2 * (head + tail));
+        int[] as = number(a, head, a.size() - tail, numbers),
+            bs = number(b, head, b.size() - tail, numbers);
+        int[] inA = new int[numbers.count()],
+            inB = new int[numbers.count()];
+        for (int s : as) {
+            inA[s] += 1;
+        }
+        for (int s : bs) {
+            inB[s] += 1;
+        }
+        _changedA = new boolean[as.length];
+        _changedB = new boolean[bs.length];
+        _indexA = shared(as, inB, _changedA);
+        _indexB = shared(bs, inA, _changedB);
+        _a = new int[_indexA.length];
+        _b = new int[_indexB.length];
+        for (int i = 0; i < _a.length; i += 1) {
+            _a[i] = as[_indexA[i]];
+        }
+        for (int j = 0; j < _b.length; j += 1) {
+            _b[j] = bs[_indexB[j]];
+        }
+        int diagonals = 2 * (_a.length + _b.length) + 3;
+        _forward = new int[diagonals];
+        _backward = new int[diagonals];
+        compare(0, _a.length, 0, _b.length);
+    }
+
+    /** Returns the number of each of lines [FROM, TO) of TEXT, as given
+     *  by NUMBERS.
+     */
+    private static int[] number(Lines text, int from, int to,
+                                Numbering numbers) {
+        int[] result = new int[to - from];
+        for (int i = 0; i < result.length; i += 1) {
+            result[i] = numbers.number(text, from + i);
+        }
+        return result;
+    }
+
+    /** Returns the indices of the lines of LINES whose numbers appear in
+     *  the other text, as counted by OTHER, marking the rest in CHANGED.
+     */
+    private static int[] shared(int[] lines, int[] other, boolean[] changed) {
+        int[] index = new int[lines.length];
+        int n = 0;
+        for (int i = 0; i < lines.length; i += 1) {
+            if (other[lines[i]] == 0) {
+                changed[i] = true;
+            } else {
+                index[n] = i;
+                n += 1;
+            }
+        }
+        return Arrays.copyOf(index, n);
+    }
+
+    /** Marks as changed the lines of _A[ALO..AHI) and _B[BLO..BHI) that
+     *  are not in their longest common subsequence.
+     */
+    private void compare(int aLo, int aHi, int bLo, int bHi) {
+        while (aLo < aHi && bLo < bHi && _a[aLo] == _b[bLo]) {
+            aLo += 1;
+            bLo += 1;
+        }
+        while (aLo < aHi && bLo < bHi && _a[aHi - 1] == _b[bHi - 1]) {
+            aHi -= 1;
+            bHi -= 1;
+        }
+        if (aLo == aHi || bLo == bHi) {
+            mark(aLo, aHi, bLo, bHi);
+            return;
+        }
+        int x = middleSnake(aLo, aHi, bLo, bHi), y = _splitB;
+        if (x == aLo && y == bLo || x == aHi && y == bHi) {
+            mark(aLo, aHi, bLo, bHi);
+        } else {
+            compare(aLo, x, bLo, y);
+            compare(x, aHi, y, bHi);
+        }
+    }
+
+    /** Marks every line of _A[ALO..AHI) and _B[BLO..BHI) as changed. */
+    private void mark(int aLo, int aHi, int bLo, int bHi) {
+        for (int i = aLo; i < aHi; i += 1) {
+            _changedA[_indexA[i]] = true;
+        }
+        for (int j = bLo; j < bHi; j += 1) {
+            _changedB[_indexB[j]] = true;
+        }
+    }
+
+    /** Returns the index into _A of a point on the middle snake of the
+     *  shortest edit script between _A[ALO..AHI) and _B[BLO..BHI), and
+     *  leaves its index into _B in _splitB. Indices along a diagonal K,
+     *  which holds the points whose index into _A less that into _B is K,
+     *  are measured from ALO going forward and from AHI going backward.
+     */
+    private int middleSnake(int aLo, int aHi, int bLo, int bHi) {
+        int n = aHi - aLo, m = bHi - bLo, delta = n - m;
+        int off = n + m + 1;
+        boolean odd = (delta & 1) != 0;
+        _forward[off + 1] = 0;
+        _backward[off + 1] = 0;
+        for (int d = 0; d <= (n + m + 1) / 2; d += 1) {
+            for (int k = -d; k <= d; k += 2) {
+                int x;
+                if (k == -d || k != d
+                    && _forward[off + k - 1] < _forward[off + k + 1]) {
+                    x = _forward[off + k + 1];
+                } else {
+                    x = _forward[off + k - 1] + 1;
+                }
+                int y = x - k;
+                while (x < n && y < m && _a[aLo + x] == _b[bLo + y]) {
+                    x += 1;
+                    y += 1;
+                }
+                _forward[off + k] = x;
+                if (odd && Math.abs(delta - k) <= d - 1
+                    && x + _backward[off + delta - k] >= n) {
+                    _splitB = bLo + y;
+                    return aLo + x;
+                }
+            }
+            for (int k = -d; k <= d; k += 2) {
+                int x;
+                if (k == -d || k != d
+                    && _backward[off + k - 1] < _backward[off + k + 1]) {
+                    x = _backward[off + k + 1];
+                } else {
+                    x = _backward[off + k - 1] + 1;
+                }
+                int y = x - k;
+                while (x < n && y < m
+                       && _a[aHi - 1 - x] == _b[bHi - 1 - y]) {
+                    x += 1;
+                    y += 1;
+                }
+                _backward[off + k] = x;
+                if (!odd && Math.abs(delta - k) <= d
+                    && x + _forward[off + delta - k] >= n) {
+                    _splitB = bLo + (n - x) - (delta - k);
+                    return aLo + n - x;
+                }
+            }
+        }
+        _splitB = bLo;
+        return aLo;
+    }
+
+    /** Returns the edits found, joining runs of changed lines. */
+    private List<Edit> edits() {
+        List<Edit> result = new ArrayList<>();
+        int i = 0, j = 0, n = _changedA.length, m = _changedB.length;
+        int h = _head;
+        while (i < n || j < m) {
+            if (i < n && j < m && !_changedA[i] && !_changedB[j]) {
+                i += 1;
+                j += 1;
+                continue;
+            }
+            int aStart = i, bStart = j;
+            while (i < n && _changedA[i]) {
+                i += 1;
+            }
+            while (j < m && _changedB[j]) {
+                j += 1;
+            }
+            result.add(new Edit(h + aStart, h + i, h + bStart, h + j));
+        }
+        return result;
+    }
+
+    /** A change of the lines [_aStart, _aEnd) of the first text into the
+     *  lines [_bStart, _bEnd) of the second. Either range may be empty.
+     */
+    static class Edit {
+
+        /** An edit of lines [ASTART, AEND) into lines [BSTART, BEND). */
+        Edit(int aStart, int aEnd, int bStart, int bEnd) {
+            _aStart = aStart;
+            _aEnd = aEnd;
+            _bStart = bStart;
+            _bEnd = bEnd;
+        }
+
+        /** The first line of the first text changed. */
+        final int _aStart;
+
+        /** The line of the first text after the last one changed. */
+        final int _aEnd;
+
+        /** The first line of the second text in its place. */
+        final int _bStart;
+
+        /** The line of the second text after the last one in its place. */
+        final int _bEnd;
+
+    }
+
+    /** The lines of a text, kept as the offsets at which each starts in
+     *  its contents, which are not copied.
+     */
+    static class Lines {
+
+        /** The lines of DATA. */
+        Lines(byte[] data) {
+            _data = data;
+            int n = 0;
+            for (byte c : data) {
+                if (c == '\n') {
+                    n += 1;
+                }
+            }
+            if (data.length > 0 && data[data.length - 1] != '\n') {
+                n += 1;
+            }
+            _starts = new int[n + 1];
+            int line = 1;
+            for (int i = 0; i < data.length && line < n; i += 1) {
+                if (data[i] == '\n') {
+                    _starts[line] = i + 1;
+                    line += 1;
+                }
+            }
+            _starts[n] = data.length;
+        }
+
+        /** Returns the number of lines. */
+        int size() {
+            return _starts.length - 1;
+        }
+
+        /** Returns the offset at which line I starts, or the length of the
+         *  text if I is the number of lines.
+         */
+        int start(int i) {
+            return _starts[i];
+        }
+
+        /** Returns a hash of the bytes of line I. */
+        int hash(int i) {
+            int h = 1;
+            for (int k = _starts[i]; k < _starts[i + 1]; k += 1) {
+                h = 31 * h + _data[k];
+            }
+            return h;
+        }
+
+        /** Returns true if every line before line I ends in a newline. */
+        boolean complete(int i) {
+            return i == 0 || _data[_starts[i] - 1] == '\n';
+        }
+
+        /** Writes lines [FROM, TO) to OUT. */
+        void write(OutputStream out, int from, int to) throws IOException {
+            out.write(_data, _starts[from], _starts[to] - _starts[from]);
+        }
+
+        /** Returns true if line I of this text holds the same bytes as line
+         *  J of OTHER.
+         */
+        boolean same(int i, Lines other, int j) {
+            return Arrays.equals(_data, _starts[i], _starts[i + 1],
+                                 other._data, other._starts[j],
+                                 other._starts[j + 1]);
+        }
+
+        /** Returns true if the text looks binary, having a zero byte near
+         *  its start, as line merges and diffs are not made of those.
+         */
+        boolean binary() {
+            for (int i = 0; i < Math.min(_data.length, BINARY_PROBE);
+                 i += 1) {
+                if (_data[i] == 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /** The number of leading bytes looked at by binary. */
+        private static final int BINARY_PROBE = 8000;
+
+        /** The contents of the text. */
+        private final byte[] _data;
+
+        /** The offset of the start of each line, followed by the length of
+         *  the contents.
+         */
+        private final int[] _starts;
+
+    }
+
+    /** The numbers given to distinct lines, kept in an open-addressed
+     *  table of the numbers, each of which indexes the hash of its line
+     *  and where that line was first seen.
+     */
+    private static class Numbering {
+
+        /** A numbering for at most LINES distinct lines. */
+        Numbering(int lines) {
+            int capacity = Integer.highestOneBit(Math.max(lines, 1)) * 4;
+            _slots = new int[capacity];
+            _shift = Integer.numberOfLeadingZeros(capacity) + 1;
+            _hashes = new int[lines];
+            _texts = new Lines[lines];
+            _lines = new int[lines];
+        }
+
+        /** Returns the number of line I of TEXT, giving it the next
+         *  number if no line like it has one yet.
+         */
+        int number(Lines text, int i) {
+            int h = text.hash(i), mask = _slots.length - 1;
+            for (int s = (h * SPREAD) >>> _shift; true; s = (s + 1) & mask) {
+                int n = _slots[s] - 1;
+                if (n < 0) {
+                    n = _count;
+                    _count += 1;
+                    _slots[s] = n + 1;
+                    _hashes[n] = h;
+                    _texts[n] = text;
+                    _lines[n] = i;
+                    return n;
+                } else if (_hashes[n] == h
+                           && text.same(i, _texts[n], _lines[n])) {
+                    return n;
+                }
+            }
+        }
+
+        /** Returns the number of distinct lines numbered. */
+        int count() {
+            return _count;
+        }
+
+        /** An odd multiplier that spreads hashes over the table, which
+         *  keeps the similar hashes of similar lines apart.
+         */
+        private static final int SPREAD = 0x9E3779B9;
+
+        /** The shift that leaves the top bits of a spread hash that index
+         *  the table.
+         */
+        private final int _shift;
+
+        /** One more than the number in each slot, or 0 if it is free. */
+        private final int[] _slots;
+
+        /** The hash of the line given each number. */
+        private final int[] _hashes;
+
+        /** The text in which the line given each number was first seen. */
+        private final Lines[] _texts;
+
+        /** The index of the line given each number in its text. */
+        private final int[] _lines;
+
+        /** The number of distinct lines numbered. */
+        private int _count;
+
+    }
+
+    /** The number of lines at the start of both texts that are the same,
+     *  which are left out of the rest of the fields.
+     */
+    private final int _head;
+
+    /** The numbers of the lines of the first text that the second shares,
+     *  which are the ones the search looks at.
+     */
+    private final int[] _a;
+
+    /** The numbers of the lines of the second text that the first shares. */
+    private final int[] _b;
+
+    /** The index in the first text of each line of _a. */
+    private final int[] _indexA;
+
+    /** The index in the second text of each line of _b. */
+    private final int[] _indexB;
+
+    /** Whether each line of the first text is changed. */
+    private final boolean[] _changedA;
+
+    /** Whether each line of the second text is changed. */
+    private final boolean[] _changedB;
+
+    /** The furthest point reached going forward on each diagonal. */
+    private final int[] _forward;
+
+    /** The furthest point reached going backward on each diagonal. */
+    private final int[] _backward;
+
+    /** The index into _b of the split point middleSnake last found. */
+    private int _splitB;
+
+}
@@ -1,6 +1,6 @@
 package gitlet;
 
-import static gitlet.Utils.GITLET;
+import static gitlet.Utils.gitletDir;
 
 /** Contains the logic needed to log the head commit and its parents.
  * @author Sam Stahl
@@ -11,7 +11,7 @@ public class LogCommand extends Command {
      *  that there are no additional arguments.
      */
     LogCommand(String[] args) {
-        if (!GITLET.exists()) {
+        if (!gitletDir().exists()) {
             System.out.println("Not in an initialized Gitlet directory.");
             setFailed();
         } else if (args.length != 1) {
@@ -23,10 +23,8 @@ public class LogCommand extends Command {
     @Override
     void execute() {
         if (!failed()) {
-            Commit c = Utils.getHead();
-            while (c != null) {
+            for (Commit c : Repository.current().log()) {
                 log(c);
-                c = c.parent();
             }
         }
     }
@@ -35,19 +33,23 @@ public class LogCommand extends Command {
      *  and merge parent's ids.
      */
     private static String mergeIDs(Commit c) {
-        return c.id().substring(0, 7) + " " + c.mergeParentID().substring(0, 7);
+        return c.parentID().substring(0, 7) + " "
+                + c.mergeParentID().substring(0, 7);
     }
 
-    /** Logs all details of commit C. */
+    /** Logs all details of commit C, printing them all at once. */
     static void log(Commit c) {
-        System.out.println("===");
-        System.out.println("commit " + c.id());
+        StringBuilder entry = new StringBuilder(ENTRY_SIZE);
+        entry.append("===\ncommit ").append(c.id()).append('\n');
         if (c.mergeParentID() != null) {
-            System.out.println("Merge: " + mergeIDs(c));
+            entry.append("Merge: ").append(mergeIDs(c)).append('\n');
         }
-        System.out.println("Date: " + c.date());
-        System.out.println(c.message());
-        System.out.println();
+        entry.append("Date: ").append(c.date()).append('\n')
+            .append(c.message()).append("\n\n");
+        System.out.print(entry);
     }
 
+    /** Room for the entry of a commit with a short message. */
+    private static final int ENTRY_SIZE = 128;
+
 }
@@ -8,13 +8,29 @@ public class Main {
     /** Usage: java gitlet.Main ARGS, where ARGS contains
      *  <COMMAND> <OPERAND> .... */
     public static void main(String... args) {
+        Repository.freshContext();
+        run(args);
+    }
+
+    /** Runs the command given by ARGS in the current repository context,
+     *  which the daemon and batch mode keep from one command to the next.
+     */
+    static void run(String... args) {
         if (args.length == 0) {
             System.out.println("Please enter a command");
             return;
         }
-        Command command = readLine(args);
-        if (command != null) {
-            command.execute();
+        try {
+            Command command = readLine(args);
+            if (command != null) {
+                command.execute();
+            }
+        } catch (GitletException e) {
+            System.out.println(e.getMessage());
+        }
+        if (System.getProperty("gitlet.stats") != null) {
+            System.err.println(Repository.current().commits().stats());
+            System.err.println(Repository.current().stats());
         }
     }
 
@@ -49,6 +65,18 @@ public class Main {
             return new ResetCommand(args);
         case "merge":
             return new MergeCommand(args);
+        case "diff":
+            return new DiffCommand(args);
+        case "merge-base":
+            return new MergeBaseCommand(args);
+        case "repack":
+            return new RepackCommand(args);
+        case "daemon":
+            return new DaemonCommand(args);
+        case "upgrade":
+            return new UpgradeCommand(args);
+        case "batch":
+            return new BatchCommand(args);
         default:
             System.out.println("No command with that name exists.");
             return null;
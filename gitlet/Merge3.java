@@ -0,0 +1,180 @@
+package gitlet;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/** A three-way line merge, as made by diff3. The edits that turn the base
+ *  into each side are found with LineDiff and walked in order of where
+ *  they start in the base. Edits from the two sides that overlap or touch
+ *  are gathered into one chunk. A chunk only one side changed takes that
+ *  side's lines, a chunk both sides changed the same way takes them too,
+ *  and any other chunk is written between conflict markers holding both
+ *  sides' lines. Lines neither side changed are copied from the base.
+ * @author Sam Stahl
+ */
+class Merge3 {
+
+    /** The marker starting the current branch's lines of a conflict. */
+    static final byte[] OURS =
+        "<<<<<<< HEAD\n".getBytes(StandardCharsets.UTF_8);
+
+    /** The marker between the two sides' lines of a conflict. */
+    static final byte[] BETWEEN =
+        "=======\n".getBytes(StandardCharsets.UTF_8);
+
+    /** The marker ending the given branch's lines of a conflict. */
+    static final byte[] THEIRS =
+        ">>>>>>>\n".getBytes(StandardCharsets.UTF_8);
+
+    /** Merges the changes made to BASE in OURS and in THEIRS, writing the
+     *  result to OUT. Returns true if any chunk conflicted.
+     */
+    static boolean merge(LineDiff.Lines base, LineDiff.Lines ours,
+                         LineDiff.Lines theirs, OutputStream out)
+        throws IOException {
+        return new Merge3(base, ours, theirs).write(out);
+    }
+
+    /** A merge of the changes to BASE in OURS and THEIRS. */
+    private Merge3(LineDiff.Lines base, LineDiff.Lines ours,
+                   LineDiff.Lines theirs) {
+        _base = base;
+        _ours = ours;
+        _theirs = theirs;
+        _oursEdits = LineDiff.diff(base, ours);
+        _theirsEdits = LineDiff.diff(base, theirs);
+    }
+
+    /** Writes the merged lines to OUT, returning true if any chunk
+     *  conflicted.
+     */
+    private boolean write(OutputStream out) throws IOException {
+        boolean conflict = false;
+        int i = 0, j = 0, copied = 0, oursDelta = 0, theirsDelta = 0;
+        while (i < _oursEdits.size() || j < _theirsEdits.size()) {
+            int lo, hi, i0 = i, j0 = j;
+            if (j == _theirsEdits.size() || i < _oursEdits.size()
+                && _oursEdits.get(i)._aStart
+                   <= _theirsEdits.get(j)._aStart) {
+                lo = _oursEdits.get(i)._aStart;
+                hi = _oursEdits.get(i)._aEnd;
+                i += 1;
+            } else {
+                lo = _theirsEdits.get(j)._aStart;
+                hi = _theirsEdits.get(j)._aEnd;
+                j += 1;
+            }
+            while (true) {
+                if (i < _oursEdits.size() && _oursEdits.get(i)._aStart <= hi) {
+                    hi = Math.max(hi, _oursEdits.get(i)._aEnd);
+                    i += 1;
+                } else if (j < _theirsEdits.size()
+                           && _theirsEdits.get(j)._aStart <= hi) {
+                    hi = Math.max(hi, _theirsEdits.get(j)._aEnd);
+                    j += 1;
+                } else {
+                    break;
+                }
+            }
+            _base.write(out, copied, lo);
+            copied = hi;
+            int oursLo = start(_oursEdits, i0, i, lo, oursDelta),
+                oursHi = end(_oursEdits, i0, i, hi, oursDelta),
+                theirsLo = start(_theirsEdits, j0, j, lo, theirsDelta),
+                theirsHi = end(_theirsEdits, j0, j, hi, theirsDelta);
+            if (i > i0) {
+                oursDelta = _oursEdits.get(i - 1)._bEnd
+                    - _oursEdits.get(i - 1)._aEnd;
+            }
+            if (j > j0) {
+                theirsDelta = _theirsEdits.get(j - 1)._bEnd
+                    - _theirsEdits.get(j - 1)._aEnd;
+            }
+            if (j == j0) {
+                _ours.write(out, oursLo, oursHi);
+            } else if (i == i0 || same(oursLo, oursHi, theirsLo, theirsHi)) {
+                _theirs.write(out, theirsLo, theirsHi);
+            } else {
+                conflict = true;
+                out.write(OURS);
+                section(out, _ours, oursLo, oursHi);
+                out.write(BETWEEN);
+                section(out, _theirs, theirsLo, theirsHi);
+                out.write(THEIRS);
+            }
+        }
+        _base.write(out, copied, _base.size());
+        return conflict;
+    }
+
+    /** Returns the line of a side at which the chunk starting at line LO
+     *  of the base starts, given the side's EDITS [FROM, TO) in the chunk
+     *  and DELTA, the lines the side gained before the chunk.
+     */
+    private static int start(List<LineDiff.Edit> edits, int from, int to,
+                             int lo, int delta) {
+        if (from == to) {
+            return lo + delta;
+        }
+        LineDiff.Edit first = edits.get(from);
+        return first._bStart - (first._aStart - lo);
+    }
+
+    /** Returns the line of a side after the chunk ending at line HI of the
+     *  base, given the side's EDITS [FROM, TO) in the chunk and DELTA, the
+     *  lines the side gained before the chunk.
+     */
+    private static int end(List<LineDiff.Edit> edits, int from, int to,
+                           int hi, int delta) {
+        if (from == to) {
+            return hi + delta;
+        }
+        LineDiff.Edit last = edits.get(to - 1);
+        return last._bEnd + (hi - last._aEnd);
+    }
+
+    /** Returns true if lines [OURSLO, OURSHI) of our side are the same as
+     *  lines [THEIRSLO, THEIRSHI) of theirs.
+     */
+    private boolean same(int oursLo, int oursHi, int theirsLo,
+                         int theirsHi) {
+        if (oursHi - oursLo != theirsHi - theirsLo) {
+            return false;
+        }
+        for (int k = 0; k < oursHi - oursLo; k += 1) {
+            if (!_ours.same(oursLo + k, _theirs, theirsLo + k)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Writes lines [FROM, TO) of TEXT to OUT as one side of a conflict,
+     *  ending it with a newline so the marker after it starts a line.
+     */
+    private static void section(OutputStream out, LineDiff.Lines text,
+                                int from, int to) throws IOException {
+        text.write(out, from, to);
+        if (!text.complete(to)) {
+            out.write('\n');
+        }
+    }
+
+    /** The lines both sides started from. */
+    private final LineDiff.Lines _base;
+
+    /** The lines of the current branch. */
+    private final LineDiff.Lines _ours;
+
+    /** The lines of the given branch. */
+    private final LineDiff.Lines _theirs;
+
+    /** The edits that turn the base into the current branch's lines. */
+    private final List<LineDiff.Edit> _oursEdits;
+
+    /** The edits that turn the base into the given branch's lines. */
+    private final List<LineDiff.Edit> _theirsEdits;
+
+}
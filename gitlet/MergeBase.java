@@ -0,0 +1,178 @@
+package gitlet;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/** Computes the merge bases of two commits over the commit graph. Like
+ *  git's paint_down_to_common, it walks down from both commits in order
+ *  of decreasing generation number, painting each commit with the sides
+ *  it is reachable from, and stops as soon as every commit left to visit
+ *  is already known to lie below a common ancestor. Only the commits
+ *  above the merge bases are ever visited, however many merges there are.
+ * @author Sam Stahl
+ */
+class MergeBase {
+
+    /** Painted on commits reachable from the first commit. */
+    private static final int PARENT1 = 1;
+
+    /** Painted on commits reachable from the second commit. */
+    private static final int PARENT2 = 2;
+
+    /** Painted on commits below a common ancestor. */
+    private static final int STALE = 4;
+
+    /** Painted on commits already found to be common ancestors. */
+    private static final int RESULT = 8;
+
+    /** Orders commits by decreasing generation, then decreasing date. */
+    private static final Comparator<Integer> NEWEST_FIRST =
+        new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                int cmp = Integer.compare(CommitGraph.generation(b),
+                        CommitGraph.generation(a));
+                if (cmp == 0) {
+                    cmp = Long.compare(CommitGraph.timestamp(b),
+                            CommitGraph.timestamp(a));
+                }
+                return cmp;
+            }
+        };
+
+    /** Returns the commit graph indices of the best common ancestors of
+     *  commits A and B, newest first. None of them is an ancestor of
+     *  another.
+     */
+    static List<Integer> all(int a, int b) {
+        List<Integer> result = new ArrayList<>();
+        if (a == b) {
+            result.add(a);
+            return result;
+        }
+        MergeBase walk = new MergeBase();
+        walk.paintDownToCommon(a, b, result);
+        walk.removeRedundant(result);
+        result.sort(NEWEST_FIRST);
+        return result;
+    }
+
+    /** Returns the graph index of one best common ancestor of commits A
+     *  and B, or CommitGraph.NONE if they have no common ancestor.
+     */
+    static int one(int a, int b) {
+        List<Integer> bases = all(a, b);
+        return bases.isEmpty() ? CommitGraph.NONE : bases.get(0);
+    }
+
+    /** Returns true if commit A is an ancestor of, or the same as,
+     *  commit B.
+     */
+    static boolean isAncestor(int a, int b) {
+        int floor = CommitGraph.generation(a);
+        Set<Integer> seen = new HashSet<>();
+        List<Integer> stack = new ArrayList<>();
+        stack.add(b);
+        while (!stack.isEmpty()) {
+            int c = stack.remove(stack.size() - 1);
+            if (c == a) {
+                return true;
+            }
+            if (c == CommitGraph.NONE || CommitGraph.generation(c) <= floor
+                    || !seen.add(c)) {
+                continue;
+            }
+            stack.add(CommitGraph.parent(c));
+            stack.add(CommitGraph.mergeParent(c));
+        }
+        return false;
+    }
+
+    /** Paints down from commits A and B, adding every common ancestor
+     *  that is not below another one found earlier to RESULT.
+     */
+    private void paintDownToCommon(int a, int b, List<Integer> result) {
+        paint(a, PARENT1);
+        paint(b, PARENT2);
+        while (_nonStale > 0) {
+            int c = _queue.poll();
+            _queued.remove(c);
+            int flags = _flags.get(c);
+            if ((flags & STALE) == 0) {
+                _nonStale -= 1;
+            }
+            flags &= PARENT1 | PARENT2 | STALE;
+            if (flags == (PARENT1 | PARENT2)) {
+                if ((_flags.get(c) & RESULT) == 0) {
+                    _flags.put(c, _flags.get(c) | RESULT);
+                    result.add(c);
+                }
+                flags |= STALE;
+            }
+            for (int p : new int[] {CommitGraph.parent(c),
+                                    CommitGraph.mergeParent(c)}) {
+                if (p != CommitGraph.NONE) {
+                    paint(p, flags);
+                }
+            }
+        }
+    }
+
+    /** Adds FLAGS to commit C, queueing it if it has not been already. */
+    private void paint(int c, int flags) {
+        int old = _flags.getOrDefault(c, 0);
+        if ((old & flags) == flags) {
+            return;
+        }
+        _flags.put(c, old | flags);
+        if (_queued.contains(c)) {
+            if ((old & STALE) == 0 && (flags & STALE) != 0) {
+                _nonStale -= 1;
+            }
+        } else {
+            _queue.add(c);
+            _queued.add(c);
+            if (((old | flags) & STALE) == 0) {
+                _nonStale += 1;
+            }
+        }
+    }
+
+    /** Removes every commit from BASES that is an ancestor of another. */
+    private void removeRedundant(List<Integer> bases) {
+        List<Integer> keep = new ArrayList<>();
+        for (int c : bases) {
+            boolean redundant = false;
+            for (int d : bases) {
+                if (c != d && isAncestor(c, d)) {
+                    redundant = true;
+                    break;
+                }
+            }
+            if (!redundant) {
+                keep.add(c);
+            }
+        }
+        bases.retainAll(keep);
+    }
+
+    /** The paint on each visited commit. */
+    private final Map<Integer, Integer> _flags = new HashMap<>();
+
+    /** The commits left to visit, newest first. */
+    private final PriorityQueue<Integer> _queue =
+            new PriorityQueue<>(NEWEST_FIRST);
+
+    /** The commits in the queue. */
+    private final Set<Integer> _queued = new HashSet<>();
+
+    /** The number of queued commits that are not painted STALE. */
+    private int _nonStale;
+
+}
@@ -0,0 +1,61 @@
+package gitlet;
+
+import java.util.List;
+
+import static gitlet.Utils.*;
+
+/** Contains the logic needed to find the merge base of two commits.
+ * @author Sam Stahl
+ */
+public class MergeBaseCommand extends Command {
+
+    /** Initializes the command with ARGS, which name two branches or
+     *  commit IDs, optionally preceded by --all.
+     */
+    MergeBaseCommand(String[] args) {
+        if (!gitletDir().exists()) {
+            System.out.println("Not in an initialized Gitlet directory.");
+            setFailed();
+        } else if (args.length == 4 && args[1].equals("--all")) {
+            _all = true;
+            _first = args[2];
+            _second = args[3];
+        } else if (args.length == 3) {
+            _first = args[1];
+            _second = args[2];
+        } else {
+            System.out.println("Incorrect operands.");
+            setFailed();
+        }
+    }
+
+    @Override
+    void execute() {
+        if (failed()) {
+            return;
+        }
+        String a = resolveRevision(_first), b = resolveRevision(_second);
+        if (a == null || b == null) {
+            System.out.println("No commit with that id exists.");
+            return;
+        }
+        List<Integer> bases = MergeBase.all(CommitGraph.find(a),
+                CommitGraph.find(b));
+        for (int base : bases) {
+            System.out.println(CommitGraph.id(base));
+            if (!_all) {
+                break;
+            }
+        }
+    }
+
+    /** True if every merge base should be printed, not just the best. */
+    private boolean _all;
+
+    /** The first branch or commit ID. */
+    private String _first;
+
+    /** The second branch or commit ID. */
+    private String _second;
+
+}
@@ -1,8 +1,8 @@
 package gitlet;
 
-import java.io.File;
+import java.util.Map;
 
-import static gitlet.Utils.*;
+import static gitlet.Utils.gitletDir;
 
 /** Initiates the merging of two branches.
  * @author Sam Stahl
@@ -10,50 +10,73 @@ import static gitlet.Utils.*;
 public class MergeCommand extends Command {
 
     /** Initializes the merge command by ensuring there are an appropriate
-     *  amount of ARGS to begin a merge.
+     *  amount of ARGS to begin a merge. With --dry-run before the branch,
+     *  the merge is only planned and printed.
      */
     MergeCommand(String[] args) {
-        if (!GITLET.exists()) {
+        if (!gitletDir().exists()) {
             System.out.println("Not in an initialized Gitlet directory.");
             setFailed();
+        } else if (args.length == 3 && args[1].equals("--dry-run")) {
+            _dryRun = true;
+            _branch = args[2];
         } else if (args.length != 2) {
             System.out.println("Incorrect operands.");
             setFailed();
+        } else {
+            _branch = args[1];
         }
-        Stage s = new Stage();
-        if (!s.getAddedFiles().isEmpty() || !s.getRemovedFiles().isEmpty()) {
-            System.out.println("You have uncommitted changes.");
-            setFailed();
+    }
+
+    @Override
+    void execute() {
+        if (failed()) {
+            return;
         }
-        _branch = args[1];
-        if (_branch.equals((getHeadBranch()))) {
-            System.out.println("Cannot merge a branch with itself.");
-            setFailed();
+        if (_dryRun) {
+            printPlan(Repository.current().planMerge(_branch));
+            return;
         }
-        if (!branchExists(_branch)) {
-            System.out.println("A branch with that name does not exist.");
-            setFailed();
-        }
-        for (File f : CWD.listFiles()) {
-            if (untracked(f)) {
-                System.out.println("There is an untracked file in the way; "
-                        + "delete it, or add and commit it first.");
-                setFailed();
+        MergeResult result = Repository.current().merge(_branch);
+        switch (result.outcome()) {
+        case ANCESTOR:
+            System.out.println("Given branch is an ancestor "
+                    + "of the current branch");
+            break;
+        case FAST_FORWARD:
+            System.out.println("Current branch fast-forwarded.");
+            break;
+        default:
+            if (result.hasConflict()) {
+                System.out.println("Encountered a merge conflict.");
             }
         }
     }
 
-    @Override
-    void execute() {
-        if (!failed()) {
-            Commit otherHead = getHead(_branch);
-            String message = "Merged " + _branch + " into "
-                    + getHeadBranch() + ".";
-            Commit merge = new Commit(getHeadSha1(), message, getHeadBranch());
-            merge.merge(otherHead, _branch);
+    /** Prints what the merge planned as RESULT would do: for a merge
+     *  commit, the action and path of each file it would change.
+     */
+    private void printPlan(MergeResult result) {
+        switch (result.outcome()) {
+        case ANCESTOR:
+            System.out.println("Given branch is an ancestor "
+                    + "of the current branch");
+            break;
+        case FAST_FORWARD:
+            System.out.println("Current branch would be fast-forwarded.");
+            break;
+        default:
+            for (Map.Entry<String, MergePlan.Action> e
+                     : result.plan().actions().entrySet()) {
+                System.out.println(e.getValue().name().toLowerCase() + " "
+                        + e.getKey());
+            }
         }
     }
 
+    /** True if the merge is only planned. */
+    private boolean _dryRun;
+
     /** The branch of the other commit. */
     private String _branch;
 
@@ -0,0 +1,327 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import static gitlet.Utils.*;
+
+/** The plan of a merge, made in two stages. Planning decides what to do
+ *  with each path from nothing but the blob IDs it has in the split point
+ *  and in the two branches, which are found by comparing their trees, so
+ *  no file is read. Resolving then works out the merged contents of the
+ *  paths both branches changed: their line merges are made on
+ *  -Dgitlet.threads threads, each reading the three versions it merges
+ *  and dropping them when done, so no more than that many files are held
+ *  at once. They are made a window at a time, whose versions add up to at
+ *  most WINDOW_BYTES, and each window's results are stored by the merge's
+ *  own thread. The merge commit then takes every planned change in one
+ *  batch.
+ * @author Sam Stahl
+ */
+public class MergePlan {
+
+    /** What a merge does with a path. */
+    public enum Action {
+        /** Only the given branch added the file, which is taken. */
+        ADD,
+        /** Only the given branch changed the file, which is taken. */
+        MODIFY,
+        /** Only the given branch deleted the file, which is deleted. */
+        DELETE,
+        /** Both branches changed the file, whose changes are merged line
+         *  by line; chunks both changed differently are marked.
+         */
+        MERGE,
+        /** One branch changed the file and the other deleted it, so both
+         *  versions are marked as a conflict.
+         */
+        CONFLICT
+    }
+
+    /** The most bytes the versions of the files merged before their
+     *  results are stored may add up to, unless a single file is larger.
+     */
+    private static final long WINDOW_BYTES = 1 << 25;
+
+    /** Plans the merge into OURS of the changes made in THEIRS since
+     *  their split point BASE.
+     */
+    MergePlan(Commit base, Commit ours, Commit theirs) {
+        List<String> changed = new ArrayList<>();
+        Tree.diff(base.treeID(), ours.treeID(), changed);
+        Tree.diff(base.treeID(), theirs.treeID(), changed);
+        for (String path : changed) {
+            if (_actions.containsKey(path)) {
+                continue;
+            }
+            File f = join(cwd(), path);
+            String b = base.getVersionOf(f), o = ours.getVersionOf(f),
+                t = theirs.getVersionOf(f);
+            if (same(o, t) || same(b, t)) {
+                continue;
+            } else if (same(b, o)) {
+                _actions.put(path, t == null ? Action.DELETE
+                             : o == null ? Action.ADD : Action.MODIFY);
+                _blobs.put(path, t);
+            } else {
+                _actions.put(path, o == null || t == null ? Action.CONFLICT
+                             : Action.MERGE);
+                _bases.put(path, b);
+                _ours.put(path, o);
+                _blobs.put(path, t);
+            }
+        }
+    }
+
+    /** Returns true if blob IDs A and B are equal, or both null. */
+    private static boolean same(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    /** Returns the action planned for each path changed by the given
+     *  branch, by path.
+     */
+    public Map<String, Action> actions() {
+        return Collections.unmodifiableMap(_actions);
+    }
+
+    /** Works out the merged contents of every path both branches changed
+     *  on THREADS threads, storing them as blobs. Returns true if any
+     *  conflicts had to be marked.
+     */
+    boolean resolve(int threads) {
+        List<String> paths = new ArrayList<>();
+        for (Map.Entry<String, Action> e : _actions.entrySet()) {
+            if (e.getValue() == Action.MERGE) {
+                paths.add(e.getKey());
+            } else if (e.getValue() == Action.CONFLICT) {
+                _blobs.put(e.getKey(), markWhole(_ours.get(e.getKey()),
+                                                 _blobs.get(e.getKey())));
+                _conflict = true;
+            }
+        }
+        ObjectStore.packs();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            for (int lo = 0, hi; lo < paths.size(); lo = hi) {
+                long bytes = 0;
+                List<Merge> window = new ArrayList<>();
+                for (hi = lo; hi < paths.size(); hi += 1) {
+                    Merge m = new Merge(paths.get(hi));
+                    bytes += m.size();
+                    if (bytes > WINDOW_BYTES && hi > lo) {
+                        break;
+                    }
+                    window.add(m);
+                }
+                Merge[] merges = window.toArray(new Merge[0]);
+                try {
+                    pool.invoke(new Task(Repository.current(), merges,
+                                         0, merges.length));
+                    for (Merge m : merges) {
+                        m.store();
+                    }
+                } finally {
+                    for (Merge m : merges) {
+                        m.discard();
+                    }
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+        return _conflict;
+    }
+
+    /** Returns the blob the merge leaves at each planned path once
+     *  resolved, or null at the paths it deletes.
+     */
+    Map<String, String> blobs() {
+        return _blobs;
+    }
+
+    /** Stores the whole of the blobs OURS and THEIRS, either of which may
+     *  be null, between conflict markers, and returns the ID of the result.
+     */
+    private static String markWhole(String ours, String theirs) {
+        List<InputStream> parts = new ArrayList<>();
+        parts.add(new ByteArrayInputStream(Merge3.OURS));
+        if (ours != null) {
+            parts.add(ObjectStore.open(ours));
+        }
+        parts.add(new ByteArrayInputStream(Merge3.BETWEEN));
+        if (theirs != null) {
+            parts.add(ObjectStore.open(theirs));
+        }
+        parts.add(new ByteArrayInputStream(Merge3.THEIRS));
+        try (InputStream merged =
+                 new SequenceInputStream(Collections.enumeration(parts))) {
+            return ObjectStore.writeBlob(merged);
+        } catch (IOException e) {
+            throw error(e.getMessage());
+        }
+    }
+
+    /** The line merge of one path both branches changed. */
+    private class Merge implements Runnable {
+
+        /** The merge of the versions of PATH, which are only read when it
+         *  runs.
+         */
+        Merge(String path) {
+            _path = path;
+        }
+
+        /** Returns the number of bytes of the versions merged. */
+        long size() {
+            String base = _bases.get(_path);
+            return (base == null ? 0 : ObjectStore.size(base))
+                + ObjectStore.size(_ours.get(_path))
+                + ObjectStore.size(_blobs.get(_path));
+        }
+
+        /** Reads the versions and writes their line merge to a temporary
+         *  file, unless one is binary. The temporary file is deleted if
+         *  the merge fails.
+         */
+        @Override
+        public void run() {
+            String base = _bases.get(_path);
+            LineDiff.Lines b = new LineDiff.Lines(
+                    base == null ? new byte[0] : ObjectStore.read(base)),
+                mine = new LineDiff.Lines(ObjectStore.read(_ours.get(_path))),
+                theirs = new LineDiff.Lines(
+                    ObjectStore.read(_blobs.get(_path)));
+            _binary = b.binary() || mine.binary() || theirs.binary();
+            if (_binary) {
+                return;
+            }
+            boolean done = false;
+            try {
+                _merged = File.createTempFile("merge", ".tmp", gitletDir());
+                try (OutputStream out = new BufferedOutputStream(
+                         Files.newOutputStream(_merged.toPath()))) {
+                    _conflicted = Merge3.merge(b, mine, theirs, out);
+                }
+                done = true;
+            } catch (IOException e) {
+                throw error(e.getMessage());
+            } finally {
+                if (!done) {
+                    discard();
+                }
+            }
+        }
+
+        /** Stores the merged contents as the path's blob, marking the
+         *  whole of both versions if either is binary.
+         */
+        void store() {
+            if (_binary) {
+                _blobs.put(_path, markWhole(_ours.get(_path),
+                                            _blobs.get(_path)));
+                _conflicted = true;
+            } else {
+                _blobs.put(_path, ObjectStore.writeBlob(_merged));
+            }
+            discard();
+            if (_conflicted) {
+                _conflict = true;
+            }
+        }
+
+        /** Deletes the temporary file, if there still is one. */
+        void discard() {
+            if (_merged != null) {
+                _merged.delete();
+                _merged = null;
+            }
+        }
+
+        /** The path merged. */
+        private final String _path;
+
+        /** True if any version is binary, so no line merge is made. */
+        private boolean _binary;
+
+        /** The temporary file the merge is written to, until it is
+         *  stored or discarded.
+         */
+        private File _merged;
+
+        /** True if the merge marked any conflicts. */
+        private boolean _conflicted;
+
+    }
+
+    /** Runs a range of merges, splitting it among threads while it holds
+     *  more than one.
+     */
+    private static class Task extends RecursiveAction {
+
+        /** Runs MERGES[LO .. HI-1] as workers of the command running in
+         *  REPO.
+         */
+        Task(Repository repo, Merge[] merges, int lo, int hi) {
+            _repo = repo;
+            _merges = merges;
+            _lo = lo;
+            _hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (_hi - _lo > 1) {
+                int mid = (_lo + _hi) >>> 1;
+                invokeAll(new Task(_repo, _merges, _lo, mid),
+                          new Task(_repo, _merges, mid, _hi));
+            } else if (_hi > _lo) {
+                Repository.work(_repo, _merges[_lo]);
+            }
+        }
+
+        /** The context of the command the merges are made for. */
+        private final Repository _repo;
+
+        /** The merges. */
+        private final Merge[] _merges;
+
+        /** The first of the merges this task runs. */
+        private final int _lo;
+
+        /** The index just past the last merge this task runs. */
+        private final int _hi;
+
+    }
+
+    /** The action planned for each path, by path. */
+    private final Map<String, Action> _actions = new TreeMap<>();
+
+    /** The given branch's blob at each path taken from it or both
+     *  changed, replaced by the merged blob once resolved.
+     */
+    private final Map<String, String> _blobs = new TreeMap<>();
+
+    /** The split point's blob at each path both branches changed. */
+    private final Map<String, String> _bases = new TreeMap<>();
+
+    /** The current branch's blob at each path both branches changed. */
+    private final Map<String, String> _ours = new TreeMap<>();
+
+    /** True if any conflicts were marked. */
+    private boolean _conflict;
+
+}
@@ -0,0 +1,71 @@
+package gitlet;
+
+/** The outcome of merging a branch into the head branch.
+ * @author Sam Stahl
+ */
+public class MergeResult {
+
+    /** The ways a merge can end. */
+    public enum Outcome {
+        /** The given branch was already an ancestor of the head branch,
+         *  so nothing changed.
+         */
+        ANCESTOR,
+        /** The head branch was an ancestor of the given branch, which
+         *  was simply checked out.
+         */
+        FAST_FORWARD,
+        /** A merge commit was made. */
+        MERGED
+    }
+
+    /** A merge that ended with OUTCOME, leaving COMMIT as the head
+     *  commit.
+     */
+    MergeResult(Outcome outcome, Commit commit) {
+        this(outcome, commit, null);
+    }
+
+    /** A merge that ended with OUTCOME, leaving COMMIT as the head
+     *  commit, as planned by PLAN.
+     */
+    MergeResult(Outcome outcome, Commit commit, MergePlan plan) {
+        _outcome = outcome;
+        _commit = commit;
+        _plan = plan;
+    }
+
+    /** Returns how the merge ended. */
+    public Outcome outcome() {
+        return _outcome;
+    }
+
+    /** Returns the head commit after the merge, which is the merge
+     *  commit if one was made, or null if a merge commit was only
+     *  planned.
+     */
+    public Commit commit() {
+        return _commit;
+    }
+
+    /** Returns the plan of the merge, or null if it made no commit. */
+    public MergePlan plan() {
+        return _plan;
+    }
+
+    /** Returns true if a merge commit was made that records conflicts. */
+    public boolean hasConflict() {
+        return _outcome == Outcome.MERGED && _commit != null
+            && _commit.hasConflict();
+    }
+
+    /** How the merge ended. */
+    private final Outcome _outcome;
+
+    /** The head commit after the merge. */
+    private final Commit _commit;
+
+    /** The plan of the merge. */
+    private final MergePlan _plan;
+
+}
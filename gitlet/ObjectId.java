@@ -0,0 +1,188 @@
+package gitlet;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static gitlet.Utils.*;
+
+/** The SHA-1 ID of an object as a value: its 20 bytes held as two longs
+ *  and an int, in the order they are written, rather than as the 40
+ *  hexadecimal digits of a string. It takes a third of the space of the
+ *  string, compares in three steps, and is read straight out of the
+ *  binary IDs of packs and the commit graph without any parsing.
+ * @author Sam Stahl
+ */
+final class ObjectId implements Comparable<ObjectId> {
+
+    /** The number of bytes of an ID. */
+    static final int BYTES = 20;
+
+    /** The ID whose bytes are W0, W1 and W2, most significant first. */
+    ObjectId(long w0, long w1, int w2) {
+        _w0 = w0;
+        _w1 = w1;
+        _w2 = w2;
+    }
+
+    /** Returns the ID denoted by the 40 hexadecimal digits of HEX. */
+    static ObjectId fromHex(String hex) {
+        if (hex.length() != 2 * BYTES) {
+            throw error("Invalid object ID %s.", hex);
+        }
+        return new ObjectId(parse(hex, 0, 16), parse(hex, 16, 32),
+                            (int) parse(hex, 32, 40));
+    }
+
+    /** Returns the ID stored as 20 bytes in BUF at OFFSET, which is left
+     *  where it is.
+     */
+    static ObjectId read(ByteBuffer buf, int offset) {
+        return new ObjectId(buf.getLong(offset), buf.getLong(offset + 8),
+                            buf.getInt(offset + 16));
+    }
+
+    /** Returns the ID stored as 20 bytes in BYTES at OFFSET. */
+    static ObjectId read(byte[] bytes, int offset) {
+        return new ObjectId(word(bytes, offset, 8), word(bytes, offset + 8, 8),
+                            (int) word(bytes, offset + 16, 4));
+    }
+
+    /** Writes this ID as 20 bytes to BYTES at OFFSET. */
+    void write(byte[] bytes, int offset) {
+        for (int k = 0; k < 8; k += 1) {
+            bytes[offset + k] = (byte) (_w0 >>> (56 - 8 * k));
+            bytes[offset + 8 + k] = (byte) (_w1 >>> (56 - 8 * k));
+        }
+        for (int k = 0; k < 4; k += 1) {
+            bytes[offset + 16 + k] = (byte) (_w2 >>> (24 - 8 * k));
+        }
+    }
+
+    /** Returns this ID as 20 bytes. */
+    byte[] bytes() {
+        byte[] bytes = new byte[BYTES];
+        write(bytes, 0);
+        return bytes;
+    }
+
+    /** Returns the 40 hexadecimal digits of this ID. */
+    String hex() {
+        byte[] out = new byte[2 * BYTES];
+        digits(_w0, 16, out, 0);
+        digits(_w1, 16, out, 16);
+        digits(_w2 & 0xffffffffL, 8, out, 32);
+        return new String(out, StandardCharsets.ISO_8859_1);
+    }
+
+    /** Returns bytes 0 to 7 of this ID as a long. */
+    long word0() {
+        return _w0;
+    }
+
+    /** Returns bytes 8 to 15 of this ID as a long. */
+    long word1() {
+        return _w1;
+    }
+
+    /** Returns bytes 16 to 19 of this ID as an int. */
+    int word2() {
+        return _w2;
+    }
+
+    @Override
+    public String toString() {
+        return hex();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof ObjectId)) {
+            return false;
+        }
+        ObjectId other = (ObjectId) obj;
+        return _w0 == other._w0 && _w1 == other._w1 && _w2 == other._w2;
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (_w0 >>> 32);
+    }
+
+    @Override
+    public int compareTo(ObjectId other) {
+        int cmp = Long.compareUnsigned(_w0, other._w0);
+        if (cmp == 0) {
+            cmp = Long.compareUnsigned(_w1, other._w1);
+        }
+        if (cmp == 0) {
+            cmp = Integer.compareUnsigned(_w2, other._w2);
+        }
+        return cmp;
+    }
+
+    /** Returns the value of the hexadecimal digits of HEX from FROM to
+     *  TO, which are at most 16.
+     */
+    private static long parse(String hex, int from, int to) {
+        long value = 0;
+        for (int i = from; i < to; i += 1) {
+            char c = hex.charAt(i);
+            int d = c < DIGIT_VALUES.length ? DIGIT_VALUES[c] : -1;
+            if (d < 0) {
+                throw error("Invalid object ID %s.", hex);
+            }
+            value = (value << 4) | d;
+        }
+        return value;
+    }
+
+    /** Returns the N bytes of BYTES at OFFSET as a number, most
+     *  significant first.
+     */
+    private static long word(byte[] bytes, int offset, int n) {
+        long value = 0;
+        for (int k = 0; k < n; k += 1) {
+            value = (value << 8) | (bytes[offset + k] & 0xff);
+        }
+        return value;
+    }
+
+    /** Writes the N low hexadecimal digits of VALUE to OUT at OFFSET,
+     *  most significant first.
+     */
+    private static void digits(long value, int n, byte[] out, int offset) {
+        for (int k = n - 1; k >= 0; k -= 1) {
+            out[offset + k] = DIGITS[(int) value & 0xf];
+            value >>>= 4;
+        }
+    }
+
+    /** The hexadecimal digits. */
+    private static final byte[] DIGITS =
+        "0123456789abcdef".getBytes(StandardCharsets.ISO_8859_1);
+
+    /** The value of each hexadecimal digit, by character, or -1. */
+    private static final byte[] DIGIT_VALUES = digitValues();
+
+    /** Returns the table of DIGIT_VALUES. */
+    private static byte[] digitValues() {
+        byte[] values = new byte['f' + 1];
+        Arrays.fill(values, (byte) -1);
+        for (int d = 0; d < DIGITS.length; d += 1) {
+            values[DIGITS[d]] = (byte) d;
+            values[Character.toUpperCase(DIGITS[d])] = (byte) d;
+        }
+        return values;
+    }
+
+    /** Bytes 0 to 7 of the ID. */
+    private final long _w0;
+
+    /** Bytes 8 to 15 of the ID. */
+    private final long _w1;
+
+    /** Bytes 16 to 19 of the ID. */
+    private final int _w2;
+
+}
@@ -0,0 +1,157 @@
+package gitlet;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/** A map from object IDs to non-negative ints, such as the positions of
+ *  commits in the commit graph, kept in open-addressed parallel arrays.
+ *  The words of each ID and its value sit in plain arrays rather than in
+ *  a node, a boxed Integer and a 40-character string per entry, and as
+ *  SHA-1 IDs are already uniformly distributed, an ID's first word is
+ *  its hash. IDs can be added straight from the binary IDs of a buffer.
+ * @author Sam Stahl
+ */
+class ObjectIdMap {
+
+    /** The value of get for an ID that is not in the map. */
+    static final int MISSING = -1;
+
+    /** The number of slots of a map that has had nothing added. */
+    private static final int MIN_CAPACITY = 16;
+
+    /** An empty map. */
+    ObjectIdMap() {
+        this(0);
+    }
+
+    /** An empty map with room for EXPECTED IDs before it grows. */
+    ObjectIdMap(int expected) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < 2 * expected) {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+    /** Returns the number of IDs in the map. */
+    int size() {
+        return _size;
+    }
+
+    /** Returns the value of ID, or MISSING if it is not in the map. */
+    int get(ObjectId id) {
+        return get(id.word0(), id.word1(), id.word2());
+    }
+
+    /** Returns the value of the ID with the given hex digits ID, or
+     *  MISSING if it is not in the map.
+     */
+    int get(String id) {
+        return get(ObjectId.fromHex(id));
+    }
+
+    /** Returns true if ID is in the map. */
+    boolean containsKey(ObjectId id) {
+        return get(id) != MISSING;
+    }
+
+    /** Makes VALUE, which must not be negative, the value of ID, and
+     *  returns its old value, or MISSING if it was not in the map.
+     */
+    int put(ObjectId id, int value) {
+        return put(id.word0(), id.word1(), id.word2(), value);
+    }
+
+    /** Makes VALUE the value of the ID stored as 20 bytes in BUF at
+     *  OFFSET, and returns its old value, or MISSING if it was not in the
+     *  map.
+     */
+    int put(ByteBuffer buf, int offset, int value) {
+        return put(buf.getLong(offset), buf.getLong(offset + 8),
+                   buf.getInt(offset + 16), value);
+    }
+
+    /** Returns the value of the ID whose words are W0, W1 and W2, or
+     *  MISSING.
+     */
+    private int get(long w0, long w1, int w2) {
+        return _values[slot(w0, w1, w2)];
+    }
+
+    /** Makes VALUE the value of the ID whose words are W0, W1 and W2, and
+     *  returns its old value, or MISSING.
+     */
+    private int put(long w0, long w1, int w2, int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("negative value");
+        }
+        int i = slot(w0, w1, w2);
+        int old = _values[i];
+        if (old == MISSING) {
+            if (2 * (_size + 1) > _values.length) {
+                grow();
+                i = slot(w0, w1, w2);
+            }
+            _w0[i] = w0;
+            _w1[i] = w1;
+            _w2[i] = w2;
+            _size += 1;
+        }
+        _values[i] = value;
+        return old;
+    }
+
+    /** Returns the slot holding the ID whose words are W0, W1 and W2, or
+     *  the empty slot where it would go.
+     */
+    private int slot(long w0, long w1, int w2) {
+        int mask = _values.length - 1;
+        int i = (int) (w0 >>> 32) & mask;
+        while (_values[i] != MISSING
+               && (_w0[i] != w0 || _w1[i] != w1 || _w2[i] != w2)) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    /** Doubles the number of slots, moving every entry to its new slot. */
+    private void grow() {
+        long[] w0 = _w0, w1 = _w1;
+        int[] w2 = _w2, values = _values;
+        allocate(2 * values.length);
+        for (int j = 0; j < values.length; j += 1) {
+            if (values[j] != MISSING) {
+                int i = slot(w0[j], w1[j], w2[j]);
+                _w0[i] = w0[j];
+                _w1[i] = w1[j];
+                _w2[i] = w2[j];
+                _values[i] = values[j];
+            }
+        }
+    }
+
+    /** Makes the map's arrays CAPACITY empty slots long. */
+    private void allocate(int capacity) {
+        _w0 = new long[capacity];
+        _w1 = new long[capacity];
+        _w2 = new int[capacity];
+        _values = new int[capacity];
+        Arrays.fill(_values, MISSING);
+    }
+
+    /** Bytes 0 to 7 of the ID in each slot. */
+    private long[] _w0;
+
+    /** Bytes 8 to 15 of the ID in each slot. */
+    private long[] _w1;
+
+    /** Bytes 16 to 19 of the ID in each slot. */
+    private int[] _w2;
+
+    /** The value in each slot, or MISSING if it is empty. */
+    private int[] _values;
+
+    /** The number of IDs in the map. */
+    private int _size;
+
+}
@@ -0,0 +1,44 @@
+package gitlet;
+
+/** A set of object IDs, such as the commits already visited by a walk of
+ *  the commit graph, kept in the open-addressed arrays of an ObjectIdMap.
+ * @author Sam Stahl
+ */
+class ObjectIdSet {
+
+    /** Adds ID to the set, returning true if it was not already in it. */
+    boolean add(ObjectId id) {
+        return _ids.put(id, 0) == ObjectIdMap.MISSING;
+    }
+
+    /** Adds the ID with the hex digits ID to the set, returning true if it
+     *  was not already in it.
+     */
+    boolean add(String id) {
+        return add(ObjectId.fromHex(id));
+    }
+
+    /** Returns true if ID is in the set. */
+    boolean contains(ObjectId id) {
+        return _ids.containsKey(id);
+    }
+
+    /** Returns true if the ID with the hex digits ID is in the set. */
+    boolean contains(String id) {
+        return contains(ObjectId.fromHex(id));
+    }
+
+    /** Returns the number of IDs in the set. */
+    int size() {
+        return _ids.size();
+    }
+
+    /** Returns true if the set is empty. */
+    boolean isEmpty() {
+        return _ids.size() == 0;
+    }
+
+    /** The IDs, each mapped to 0. */
+    private final ObjectIdMap _ids = new ObjectIdMap();
+
+}
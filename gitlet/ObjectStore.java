@@ -0,0 +1,600 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import static gitlet.Utils.*;
+
+/** The object store, which keeps the contents of every committed file,
+ *  tree and commit under the SHA-1 ID of those contents. An object is
+ *  either loose, in a file of its own, or packed into one of the Packs.
+ *  Loose blobs live in the files folder, where each starts with a small
+ *  uncompressed header, holding a magic number, the type of the object
+ *  and the length of its contents, which is followed by the
+ *  deflate-compressed contents themselves; loose trees and commits are
+ *  kept in the trees and commits folders in the binary formats of
+ *  Tree.encode and Commit.encode, or serialized by Java in repositories
+ *  that have not been upgraded since. Like git's objects folder, each
+ *  of these is split into subfolders named by the first two digits of
+ *  the IDs they hold, so no folder grows too large to list or search
+ *  quickly.
+ *  Blobs are only ever read and written through streams, or through the
+ *  channels of working files and fixed direct buffers, so no file is
+ *  held in memory as a whole, and any bytes, not just text, are stored
+ *  exactly. load, which reads trees and commits, tries the packs first,
+ *  where a repacked repository keeps nearly all of them, and then the
+ *  loose objects; a blob is streamed from its loose copy if it has one,
+ *  and otherwise from its pack.
+ * @author Sam Stahl
+ */
+class ObjectStore {
+
+    /** The type of an object holding the contents of a file. */
+    static final byte BLOB = 1;
+
+    /** The type of an object holding a Tree. */
+    static final byte TREE = 2;
+
+    /** The type of an object holding a Commit. */
+    static final byte COMMIT = 3;
+
+    /** Identifies a loose object. */
+    private static final short MAGIC = 0x474c;
+
+    /** The width in bytes of an object's header. */
+    private static final int HEADER = 2 + 1 + 8;
+
+    /** The size of the buffers used for copying. */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** Two direct buffers of BUFFER_SIZE bytes for each thread that
+     *  hashes or stores files, which are read into the first. Direct
+     *  buffers are costly to make and are kept outside the heap, so each
+     *  thread makes its pair once.
+     */
+    private static final ThreadLocal<ByteBuffer[]> BUFFERS =
+        new ThreadLocal<ByteBuffer[]>() {
+            @Override
+            protected ByteBuffer[] initialValue() {
+                return new ByteBuffer[] {
+                    ByteBuffer.allocateDirect(BUFFER_SIZE),
+                    ByteBuffer.allocateDirect(BUFFER_SIZE)
+                };
+            }
+        };
+
+    /** Returns the file that holds the loose object of the given TYPE
+     *  and ID in the subfolder named by the first two digits of the ID.
+     *  Every new loose object is written here.
+     */
+    static File path(byte type, String id) {
+        return join(folder(type), id.substring(0, 2), id.substring(2));
+    }
+
+    /** Returns the folder that stores the loose objects of the given
+     *  TYPE.
+     */
+    static File folder(byte type) {
+        return join(gitletDir(), type == TREE ? "trees"
+                    : type == COMMIT ? "commits" : "files");
+    }
+
+    /** Returns the file that holds the loose object of the given TYPE
+     *  and ID in the old, flat layout, which is still read until the
+     *  repository is upgraded.
+     */
+    private static File flatPath(byte type, String id) {
+        return type == BLOB ? join(folder(BLOB), id)
+            : join(folder(type), id + ".txt");
+    }
+
+    /** Returns the file that holds the blob with the given ID in the
+     *  old, uncompressed layout, which is still read until the repository
+     *  is upgraded.
+     */
+    private static File legacyPath(String id) {
+        return join(folder(BLOB), id + ".txt");
+    }
+
+    /** Returns the file that holds the loose object of the given TYPE
+     *  and ID in whichever layout it is stored in, or null if it is not
+     *  stored loose.
+     */
+    private static File loose(byte type, String id) {
+        File f = path(type, id);
+        if (f.exists()) {
+            return f;
+        }
+        f = flatPath(type, id);
+        if (f.exists()) {
+            return f;
+        }
+        f = legacyPath(id);
+        return type == BLOB && f.exists() ? f : null;
+    }
+
+    /** Returns true if the blob with the given ID is stored. */
+    static boolean contains(String id) {
+        return contains(BLOB, id);
+    }
+
+    /** Returns true if the object of the given TYPE and ID is stored,
+     *  loose or packed.
+     */
+    static boolean contains(byte type, String id) {
+        return loose(type, id) != null || findPacked(id) != null;
+    }
+
+    /** Returns the IDs of every stored object of the given TYPE, loose
+     *  or packed, in sorted order.
+     */
+    static List<String> ids(byte type) {
+        TreeSet<String> ids = new TreeSet<>();
+        File[] entries = folder(type).listFiles();
+        if (entries != null) {
+            for (File f : entries) {
+                if (f.isDirectory() && f.getName().length() == 2) {
+                    List<String> names = plainFilenamesIn(f);
+                    for (String name : names) {
+                        if (name.length() == ID_LENGTH - 2) {
+                            ids.add(f.getName() + name);
+                        }
+                    }
+                } else {
+                    String id = filenameWithoutExtension(f.getName());
+                    if (id.length() == ID_LENGTH) {
+                        ids.add(id);
+                    }
+                }
+            }
+        }
+        for (Pack pack : packs()) {
+            for (int i = 0; i < pack.count(); i += 1) {
+                if (pack.type(i) == type) {
+                    ids.add(pack.id(i));
+                }
+            }
+        }
+        return new ArrayList<>(ids);
+    }
+
+    /** Returns the contents of the object of the given TYPE and ID, or
+     *  null if it is not stored. Only meant for objects known to be small.
+     *  The packs are searched first, which takes no system calls, since
+     *  most of the objects of a long history are packed.
+     */
+    static byte[] load(byte type, String id) {
+        Object[] packed = findPacked(id);
+        if (packed != null) {
+            return ((Pack) packed[0]).read((Integer) packed[1]);
+        }
+        File f = loose(type, id);
+        if (f == null) {
+            return null;
+        }
+        return type == BLOB ? read(id) : readContents(f);
+    }
+
+    /** Stores CONTENTS as a loose tree or commit, as given by TYPE, if it
+     *  is not stored already, and returns its ID.
+     */
+    static String write(byte type, byte[] contents) {
+        String id = sha1(contents);
+        if (!contains(type, id)) {
+            File f = path(type, id);
+            f.getParentFile().mkdirs();
+            writeContents(f, contents);
+        }
+        return id;
+    }
+
+    /** Deletes the loose copy of the object of the given TYPE and ID,
+     *  which must also be packed.
+     */
+    static void deleteLoose(byte type, String id) {
+        File f = path(type, id);
+        f.delete();
+        f.getParentFile().delete();
+        flatPath(type, id).delete();
+        if (type == BLOB) {
+            legacyPath(id).delete();
+        }
+    }
+
+    /** Returns the packs of this repository, opening them if they have
+     *  not been opened yet.
+     */
+    static List<Pack> packs() {
+        Repository repo = Repository.current();
+        if (repo.packs() == null) {
+            repo.stamp(Pack.folder());
+            repo.setPacks(Pack.all());
+        }
+        return repo.packs();
+    }
+
+    /** Forgets the open packs, so that the packs are listed again the
+     *  next time they are needed.
+     */
+    static void reloadPacks() {
+        Repository.current().setPacks(null);
+    }
+
+    /** Returns the pack holding the object with the given ID and its
+     *  position in that pack's index, or null if no pack holds it.
+     */
+    private static Object[] findPacked(String id) {
+        for (Pack pack : packs()) {
+            int i = pack.find(id);
+            if (i >= 0) {
+                return new Object[] {pack, i};
+            }
+        }
+        return null;
+    }
+
+    /** Returns the SHA-1 ID of the contents of file F, as it would be
+     *  stored, without storing it. F is read through its channel into
+     *  this thread's direct buffer, so the memory used does not grow with
+     *  its size.
+     */
+    static String hash(File f) {
+        MessageDigest md = sha1Digest();
+        ByteBuffer buf = BUFFERS.get()[0];
+        try (FileChannel in = FileChannel.open(f.toPath(),
+                 StandardOpenOption.READ)) {
+            for (buf.clear(); in.read(buf) >= 0; buf.clear()) {
+                buf.flip();
+                md.update(buf);
+            }
+        } catch (IOException e) {
+            throw error(e.getMessage());
+        }
+        return ObjectId.read(md.digest(), 0).hex();
+    }
+
+    /** Stores the contents of file F as a blob, if they are not stored
+     *  already, and returns their ID. F is read only once, through its
+     *  channel into this thread's direct buffers: each buffer read is
+     *  hashed and then deflated into a temporary file, whose header is
+     *  filled in last, and which then either becomes the object or is
+     *  discarded. The memory used does not grow with the size of F. The
+     *  deflater reads the input buffer itself, which is left empty before
+     *  it is finished.
+     */
+    static String writeBlob(File f) {
+        File tmp = tempBlob();
+        MessageDigest md = sha1Digest();
+        Deflater deflater = new Deflater();
+        ByteBuffer in = BUFFERS.get()[0], out = BUFFERS.get()[1];
+        try {
+            try (FileChannel src = FileChannel.open(f.toPath(),
+                         StandardOpenOption.READ);
+                 FileChannel dest = FileChannel.open(tmp.toPath(),
+                         StandardOpenOption.WRITE)) {
+                long length = 0;
+                dest.position(HEADER);
+                for (in.clear(); src.read(in) >= 0; in.clear()) {
+                    in.flip();
+                    length += in.remaining();
+                    in.mark();
+                    md.update(in);
+                    in.reset();
+                    deflater.setInput(in);
+                    while (!deflater.needsInput()) {
+                        deflate(deflater, out, dest);
+                    }
+                }
+                in.flip();
+                deflater.finish();
+                while (!deflater.finished()) {
+                    deflate(deflater, out, dest);
+                }
+                dest.write(ByteBuffer.wrap(header(BLOB, length)), 0);
+            }
+            return store(tmp, ObjectId.read(md.digest(), 0).hex(), false);
+        } catch (IOException e) {
+            tmp.delete();
+            throw error(e.getMessage());
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /** Deflates what DEFLATER can produce into OUT and writes it all to
+     *  DEST.
+     */
+    private static void deflate(Deflater deflater, ByteBuffer out,
+                                FileChannel dest) throws IOException {
+        out.clear();
+        deflater.deflate(out);
+        out.flip();
+        while (out.hasRemaining()) {
+            dest.write(out);
+        }
+    }
+
+    /** Stores CONTENTS as a blob, if they are not stored already, and
+     *  returns their ID.
+     */
+    static String writeBlob(byte[] contents) {
+        return writeBlob(new ByteArrayInputStream(contents));
+    }
+
+    /** Stores everything read from IN as a blob, if it is not stored
+     *  already, and returns its ID.
+     */
+    static String writeBlob(InputStream in) {
+        return writeBlob(in, false);
+    }
+
+    /** Stores a loose copy of the blob ID, unless it is stored loose
+     *  already, so that it outlives the packs it is in.
+     */
+    static void unpack(String id) {
+        if (loose(BLOB, id) != null) {
+            return;
+        }
+        try (InputStream in = open(id)) {
+            writeBlob(in, true);
+        } catch (IOException e) {
+            throw error(e.getMessage());
+        }
+    }
+
+    /** Stores everything read from IN as a blob, if it is not stored
+     *  already, or only if it is not stored loose if LOOSE, and returns
+     *  its ID.
+     */
+    private static String writeBlob(InputStream in, boolean loose) {
+        File tmp = tempBlob();
+        MessageDigest md = sha1Digest();
+        try {
+            long length = 0;
+            try (OutputStream out = new BufferedOutputStream(
+                    Files.newOutputStream(tmp.toPath()), BUFFER_SIZE)) {
+                out.write(header(BLOB, 0));
+                Deflater deflater = new Deflater();
+                DeflaterOutputStream z =
+                    new DeflaterOutputStream(out, deflater, BUFFER_SIZE);
+                DigestOutputStream digest = new DigestOutputStream(z, md);
+                byte[] buf = new byte[BUFFER_SIZE];
+                for (int n = in.read(buf); n >= 0; n = in.read(buf)) {
+                    digest.write(buf, 0, n);
+                    length += n;
+                }
+                z.finish();
+                deflater.end();
+            }
+            try (RandomAccessFile raf = new RandomAccessFile(tmp, "rw")) {
+                raf.seek(HEADER - 8);
+                raf.writeLong(length);
+            }
+            return store(tmp, ObjectId.read(md.digest(), 0).hex(), loose);
+        } catch (IOException e) {
+            tmp.delete();
+            throw error(e.getMessage());
+        }
+    }
+
+    /** Returns a new empty temporary file in the blob folder. */
+    private static File tempBlob() {
+        folder(BLOB).mkdir();
+        try {
+            return File.createTempFile("blob", ".tmp", folder(BLOB));
+        } catch (IOException e) {
+            throw error(e.getMessage());
+        }
+    }
+
+    /** Makes the complete blob in the temporary file TMP the object with
+     *  the given ID, or deletes TMP if that object is already stored, or
+     *  stored loose if LOOSE, and returns ID.
+     */
+    private static String store(File tmp, String id, boolean loose)
+        throws IOException {
+        File dest = path(BLOB, id);
+        if (dest.exists() || flatPath(BLOB, id).exists()
+            || !loose && findPacked(id) != null) {
+            tmp.delete();
+        } else {
+            dest.getParentFile().mkdir();
+            Files.move(tmp.toPath(), dest.toPath(),
+                    StandardCopyOption.ATOMIC_MOVE);
+        }
+        return id;
+    }
+
+    /** Returns a stream of the contents of the object with the given ID,
+     *  which the caller must close.
+     */
+    static InputStream open(String id) {
+        File f = loose(BLOB, id);
+        if (f == null) {
+            Object[] packed = findPacked(id);
+            if (packed == null) {
+                throw error("Missing object %s.", id);
+            }
+            return ((Pack) packed[0]).open((Integer) packed[1]);
+        }
+        Repository.noteRead();
+        try {
+            InputStream in = new BufferedInputStream(
+                    Files.newInputStream(f.toPath()), BUFFER_SIZE);
+            if (f.equals(legacyPath(id))) {
+                return in;
+            }
+            readHeader(in, id);
+            return new InflaterInputStream(in);
+        } catch (IOException e) {
+            throw error(e.getMessage());
+        }
+    }
+
+    /** Returns the length of the contents of the blob with the
+     *  given ID.
+     */
+    static long size(String id) {
+        return size(BLOB, id);
+    }
+
+    /** Returns the length of the contents of the object of the given
+     *  TYPE and ID, without reading them.
+     */
+    static long size(byte type, String id) {
+        File f = loose(type, id);
+        if (f == null) {
+            Object[] packed = findPacked(id);
+            if (packed == null) {
+                throw error("Missing object %s.", id);
+            }
+            return ((Pack) packed[0]).size((Integer) packed[1]);
+        }
+        if (type != BLOB || f.equals(legacyPath(id))) {
+            return f.length();
+        }
+        try (InputStream in = Files.newInputStream(f.toPath())) {
+            return readHeader(in, id);
+        } catch (IOException e) {
+            throw error(e.getMessage());
+        }
+    }
+
+    /** Returns the entire contents of the object with the given ID. Only
+     *  meant for objects known to be small.
+     */
+    static byte[] read(String id) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream in = open(id)) {
+            in.transferTo(out);
+        } catch (IOException e) {
+            throw error(e.getMessage());
+        }
+        return out.toByteArray();
+    }
+
+    /** Writes the contents of the object with the given ID to file DEST,
+     *  creating or overwriting it, and the folders above it, as needed.
+     */
+    static void copyTo(String id, File dest) {
+        dest.getParentFile().mkdirs();
+        try (InputStream in = open(id);
+             OutputStream out = new BufferedOutputStream(
+                 Files.newOutputStream(dest.toPath()), BUFFER_SIZE)) {
+            in.transferTo(out);
+        } catch (IOException e) {
+            throw error(e.getMessage());
+        }
+    }
+
+    /** Moves every blob stored in the uncompressed layout, as a plain
+     *  copy of its contents named by its ID plus .txt, into the
+     *  compressed layout. Returns the number of blobs moved. Each copy is
+     *  only deleted once the compressed blob is stored.
+     */
+    static int migrate() {
+        int count = 0;
+        File[] files = folder(BLOB).listFiles();
+        if (files == null) {
+            return count;
+        }
+        for (File f : files) {
+            if (f.getName().endsWith(".txt")) {
+                writeBlob(f);
+                f.delete();
+                count += 1;
+            }
+        }
+        return count;
+    }
+
+    /** Moves every loose object stored in the flat layout, directly in
+     *  the folder for its type, into the subfolder for its ID. Returns
+     *  the number of objects moved.
+     */
+    static int shard() {
+        int count = 0;
+        for (byte type : new byte[] {BLOB, TREE, COMMIT}) {
+            List<String> names = plainFilenamesIn(folder(type));
+            if (names == null) {
+                continue;
+            }
+            for (String name : names) {
+                String id = filenameWithoutExtension(name);
+                if (id.length() != ID_LENGTH
+                    || !join(folder(type), name).equals(flatPath(type, id))) {
+                    continue;
+                }
+                File dest = path(type, id);
+                dest.getParentFile().mkdir();
+                try {
+                    Files.move(flatPath(type, id).toPath(), dest.toPath(),
+                            StandardCopyOption.REPLACE_EXISTING);
+                } catch (IOException e) {
+                    throw error(e.getMessage());
+                }
+                count += 1;
+            }
+        }
+        return count;
+    }
+
+    /** Returns the header of an object of the given TYPE whose contents
+     *  are LENGTH bytes long.
+     */
+    private static byte[] header(byte type, long length) {
+        byte[] h = new byte[HEADER];
+        h[0] = (byte) (MAGIC >>> 8);
+        h[1] = (byte) MAGIC;
+        h[2] = type;
+        for (int i = 0; i < 8; i += 1) {
+            h[HEADER - 1 - i] = (byte) (length >>> (8 * i));
+        }
+        return h;
+    }
+
+    /** Reads the header of the object with the given ID from IN, and
+     *  returns the length of its contents.
+     */
+    private static long readHeader(InputStream in, String id)
+        throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readShort() != MAGIC) {
+            throw error("Corrupt object %s.", id);
+        }
+        data.readByte();
+        return data.readLong();
+    }
+
+    /** Returns a new SHA-1 message digest. */
+    static MessageDigest sha1Digest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException excp) {
+            throw new IllegalArgumentException("System does not support SHA-1");
+        }
+    }
+
+}
@@ -0,0 +1,647 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+
+import static gitlet.Utils.*;
+
+/** A packfile and its index. The pack holds many objects in one file,
+ *  each as a small header followed by its deflate-compressed data. The
+ *  header is the object's type and the length of its data as a varint;
+ *  a delta entry is followed by the distance back to its base entry and
+ *  the length of the object it produces, and its data is a Delta against
+ *  that base. The pack ends with the SHA-1 hash of everything before it,
+ *  which also names it. The index lists the IDs in the pack in sorted
+ *  order, after a fan-out table of how many of them start with each byte
+ *  value, followed by the offset and type of each object, so an object
+ *  is found with a binary search. Blobs larger than BIG_BLOB are never
+ *  deltified nor used as delta bases, and they are streamed into and out
+ *  of the pack rather than held whole in memory. A pack is kept under
+ *  2 GiB, so that it is mapped whole and positions in it are ints; the
+ *  objects of a larger repository are spread over several packs.
+ * @author Sam Stahl
+ */
+class Pack {
+
+    /** The folder that stores all packs. */
+    static File folder() {
+        return join(gitletDir(), "packs");
+    }
+
+    /** The type of a pack entry holding a delta. */
+    private static final byte DELTA = 0;
+
+    /** Identifies a pack. */
+    private static final int PACK_MAGIC = 0x4750414b;
+
+    /** Identifies a pack index. */
+    private static final int IDX_MAGIC = 0x47494458;
+
+    /** The version of the pack and index layouts. */
+    private static final int VERSION = 1;
+
+    /** The width in bytes of a binary SHA-1 ID. */
+    private static final int ID_BYTES = ID_LENGTH / 2;
+
+    /** The width in bytes of the index header and fan-out table. */
+    private static final int IDX_HEADER = 12 + 256 * 4;
+
+    /** The number of recent objects tried as delta bases. */
+    private static final int WINDOW = 10;
+
+    /** The longest chain of deltas allowed. */
+    private static final int MAX_DEPTH = 50;
+
+    /** The number of resolved delta bases kept per pack. */
+    private static final int BASE_CACHE = 64;
+
+    /** The size in bytes above which blobs are stored whole. */
+    static final long BIG_BLOB = 1 << 20;
+
+    /** The most bytes a pack may take, so that every position in it fits
+     *  in an int and it can be mapped whole. -Dgitlet.packLimit lowers it.
+     */
+    private static final long PACK_LIMIT =
+        Math.min(Integer.MAX_VALUE,
+                 Long.getLong("gitlet.packLimit", Integer.MAX_VALUE));
+
+    /** The bytes of a pack besides its entries: its header and hash. */
+    private static final long PACK_OVERHEAD = 12 + ID_LENGTH / 2;
+
+    /** Opens the pack file PACK, whose index is the file IDX. */
+    Pack(File pack, File idx) {
+        Repository.noteRead();
+        _file = pack;
+        _indexFile = idx;
+        _pack = map(pack);
+        _idx = map(idx);
+        if (_idx.getInt(0) != IDX_MAGIC || _pack.getInt(0) != PACK_MAGIC) {
+            throw error("Corrupt pack %s.", pack.getName());
+        }
+        _count = _idx.getInt(8);
+    }
+
+    /** Returns every pack in the repository. */
+    static List<Pack> all() {
+        List<Pack> packs = new ArrayList<>();
+        List<String> names = plainFilenamesIn(folder());
+        if (names != null) {
+            for (String name : names) {
+                if (name.endsWith(".pack")) {
+                    String base = name.substring(0, name.length() - 5);
+                    packs.add(new Pack(join(folder(), name),
+                            join(folder(), base + ".idx")));
+                }
+            }
+        }
+        return packs;
+    }
+
+    /** Returns the file that holds this pack. */
+    File file() {
+        return _file;
+    }
+
+    /** Deletes this pack and its index, which must not be read again. */
+    void delete() {
+        _inflater.end();
+        _indexFile.delete();
+        _file.delete();
+    }
+
+    /** Returns the number of objects in this pack. */
+    int count() {
+        return _count;
+    }
+
+    /** Returns the position of the object with the given ID in the
+     *  index, or -1 if it is not in this pack.
+     */
+    int find(String id) {
+        ObjectId key = ObjectId.fromHex(id);
+        int first = (int) (key.word0() >>> 56);
+        int lo = first == 0 ? 0 : _idx.getInt(12 + 4 * (first - 1)),
+            hi = _idx.getInt(12 + 4 * first);
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = compareId(mid, key);
+            if (cmp == 0) {
+                return mid;
+            } else if (cmp < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return -1;
+    }
+
+    /** Returns the ID of the object at position I of the index. */
+    String id(int i) {
+        return ObjectId.read(_idx, IDX_HEADER + i * ID_BYTES).hex();
+    }
+
+    /** Returns the type of the object at position I of the index. */
+    byte type(int i) {
+        return _idx.get(IDX_HEADER + _count * (ID_BYTES + 8) + i);
+    }
+
+    /** Returns the contents of the object at position I of the index. */
+    byte[] read(int i) {
+        return readAt(_idx.getLong(IDX_HEADER + _count * ID_BYTES + i * 8));
+    }
+
+    /** Returns a stream of the contents of the object at position I of
+     *  the index, which the caller must close. An entry that is not a
+     *  delta is inflated straight from the mapped pack as it is read;
+     *  a delta is resolved whole, as by read.
+     */
+    InputStream open(int i) {
+        int[] pos = {(int) _idx.getLong(IDX_HEADER + _count * ID_BYTES
+                                        + i * 8)};
+        if (_pack.get(pos[0]) == DELTA) {
+            return new ByteArrayInputStream(read(i));
+        }
+        pos[0] += 1;
+        long size = readVarint(pos);
+        ByteBuffer data = _pack.duplicate();
+        data.position(pos[0]);
+        return new EntryStream(data, size);
+    }
+
+    /** Returns the length of the contents of the object at position I
+     *  of the index, without reading them.
+     */
+    long size(int i) {
+        int[] pos = {(int) _idx.getLong(IDX_HEADER + _count * ID_BYTES
+                                        + i * 8)};
+        byte type = _pack.get(pos[0]);
+        pos[0] += 1;
+        long size = readVarint(pos);
+        if (type == DELTA) {
+            readVarint(pos);
+            size = readVarint(pos);
+        }
+        return size;
+    }
+
+    /** Returns the contents of the entry at OFFSET of the pack, resolving
+     *  its chain of deltas if it has one. Entries are read one at a time,
+     *  as they share the cache of delta bases.
+     */
+    private synchronized byte[] readAt(long offset) {
+        byte[] cached = _bases.get(offset);
+        if (cached != null) {
+            return cached;
+        }
+        int[] pos = {(int) offset};
+        byte type = _pack.get(pos[0]);
+        pos[0] += 1;
+        int size = (int) readVarint(pos);
+        byte[] result;
+        if (type == DELTA) {
+            long base = offset - readVarint(pos);
+            readVarint(pos);
+            result = Delta.apply(readAt(base), inflate(pos[0], size));
+        } else {
+            result = inflate(pos[0], size);
+        }
+        _bases.put(offset, result);
+        return result;
+    }
+
+    /** Returns the SIZE bytes produced by inflating the pack from
+     *  position POS. One inflater is reset and reused for every entry,
+     *  as reading each commit of a long log through a new one cost more
+     *  than the commit itself.
+     */
+    private synchronized byte[] inflate(int pos, int size) {
+        Inflater inflater = _inflater;
+        inflater.reset();
+        try {
+            ByteBuffer in = _pack.duplicate();
+            in.position(pos);
+            inflater.setInput(in);
+            byte[] out = new byte[size];
+            int n = 0;
+            while (n < size && !inflater.finished()) {
+                int k = inflater.inflate(out, n, size - n);
+                if (k == 0 && (inflater.needsInput()
+                               || inflater.needsDictionary())) {
+                    throw error("Corrupt pack entry.");
+                }
+                n += k;
+            }
+            return out;
+        } catch (DataFormatException e) {
+            throw error(e.getMessage());
+        }
+    }
+
+    /** A stream inflating one entry of a pack from the mapped pack, with
+     *  an inflater of its own, so that any number may be read at once.
+     */
+    private static class EntryStream extends InputStream {
+
+        /** A stream of the SIZE bytes inflated from the start of DATA. */
+        EntryStream(ByteBuffer data, long size) {
+            _inflater.setInput(data);
+            _left = size;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (_left == 0) {
+                return -1;
+            } else if (len == 0) {
+                return 0;
+            }
+            try {
+                int n;
+                do {
+                    if (_inflater.finished() || _inflater.needsInput()
+                        || _inflater.needsDictionary()) {
+                        throw new IOException("Corrupt pack entry.");
+                    }
+                    n = _inflater.inflate(b, off, (int) Math.min(len, _left));
+                } while (n == 0);
+                _left -= n;
+                return n;
+            } catch (DataFormatException e) {
+                throw new IOException(e.getMessage());
+            }
+        }
+
+        @Override
+        public void close() {
+            _inflater.end();
+        }
+
+        /** The inflater of the entry. */
+        private final Inflater _inflater = new Inflater();
+
+        /** The number of bytes not yet read. */
+        private long _left;
+
+    }
+
+    /** Reads a varint from the pack at POS[0], advancing POS[0]. */
+    private long readVarint(int[] pos) {
+        long value = 0;
+        for (int shift = 0;; shift += 7) {
+            int b = _pack.get(pos[0]) & 0xff;
+            pos[0] += 1;
+            value |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+
+    /** Compares the ID at position I of the index with KEY. */
+    private int compareId(int i, ObjectId key) {
+        int base = IDX_HEADER + i * ID_BYTES;
+        int cmp = Long.compareUnsigned(_idx.getLong(base), key.word0());
+        if (cmp == 0) {
+            cmp = Long.compareUnsigned(_idx.getLong(base + 8), key.word1());
+        }
+        if (cmp == 0) {
+            cmp = Integer.compareUnsigned(_idx.getInt(base + 16),
+                                          key.word2());
+        }
+        return cmp;
+    }
+
+    /** Writes every object in OBJECTS, a map from IDs to types, into new
+     *  packs, deltifying each blob and tree against the most similar
+     *  recent objects of the same type. NAMES gives the file or directory
+     *  name each blob or tree was found under, which groups similar
+     *  objects together. Blobs larger than BIG_BLOB are copied in whole,
+     *  a buffer at a time. A pack is closed and the next begun before
+     *  the largest its entries could come to would pass PACK_LIMIT, so
+     *  that every position in a pack fits in an int; a blob too large for
+     *  any pack is left out. Returns the new packs, opened.
+     */
+    static List<Pack> write(Map<String, Byte> objects,
+                            Map<String, String> names) {
+        List<String> order = new ArrayList<>(objects.keySet());
+        Map<String, Long> sizes = new HashMap<>();
+        for (String id : order) {
+            sizes.put(id, ObjectStore.size(objects.get(id), id));
+        }
+        order.sort(new Comparator<String>() {
+            @Override
+            public int compare(String a, String b) {
+                int cmp = Byte.compare(objects.get(a), objects.get(b));
+                if (cmp == 0) {
+                    cmp = names.getOrDefault(a, "")
+                        .compareTo(names.getOrDefault(b, ""));
+                }
+                if (cmp == 0) {
+                    cmp = Long.compare(sizes.get(b), sizes.get(a));
+                }
+                return cmp;
+            }
+        });
+        List<Pack> packs = new ArrayList<>();
+        List<String> group = new ArrayList<>();
+        long bound = PACK_OVERHEAD;
+        for (String id : order) {
+            long entry = entryBound(sizes.get(id));
+            if (PACK_OVERHEAD + entry > PACK_LIMIT) {
+                continue;
+            } else if (bound + entry > PACK_LIMIT) {
+                packs.add(writeOne(group, objects, sizes));
+                group.clear();
+                bound = PACK_OVERHEAD;
+            }
+            group.add(id);
+            bound += entry;
+        }
+        if (!group.isEmpty()) {
+            packs.add(writeOne(group, objects, sizes));
+        }
+        return packs;
+    }
+
+    /** Returns the most bytes the entry of an object whose contents are
+     *  SIZE bytes long can take in a pack, whether or not it is a delta,
+     *  allowing for deflate storing incompressible data.
+     */
+    private static long entryBound(long size) {
+        return 1 + 3 * 10 + size + (size >>> 8) + 64;
+    }
+
+    /** Writes the objects ORDER lists, in that order, into a new pack,
+     *  where OBJECTS gives their types and SIZES the lengths of their
+     *  contents, and returns it, opened.
+     */
+    private static Pack writeOne(List<String> order,
+                                 Map<String, Byte> objects,
+                                 Map<String, Long> sizes) {
+        folder().mkdir();
+        File tmp;
+        try {
+            tmp = File.createTempFile("pack", ".tmp", folder());
+        } catch (IOException e) {
+            throw error(e.getMessage());
+        }
+        MessageDigest md = ObjectStore.sha1Digest();
+        Map<String, Long> offsets = new HashMap<>();
+        Map<String, Byte> packed = new HashMap<>();
+        try (OutputStream file = new BufferedOutputStream(
+                Files.newOutputStream(tmp.toPath()), 1 << 16)) {
+            DataOutputStream out =
+                new DataOutputStream(new DigestOutputStream(file, md));
+            out.writeInt(PACK_MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(order.size());
+            long offset = 12;
+            List<Object[]> window = new ArrayList<>();
+            for (String id : order) {
+                byte type = objects.get(id);
+                packed.put(id, type);
+                if (type == ObjectStore.BLOB && sizes.get(id) > BIG_BLOB) {
+                    offsets.put(id, offset);
+                    offset += writeWhole(id, sizes.get(id), out);
+                    continue;
+                }
+                byte[] data = ObjectStore.load(type, id);
+                byte[] delta = null;
+                Object[] base = null;
+                if (type != ObjectStore.COMMIT) {
+                    for (Object[] w : window) {
+                        if ((Byte) w[1] != type
+                            || (Integer) w[3] >= MAX_DEPTH) {
+                            continue;
+                        }
+                        byte[] d = Delta.encode((byte[]) w[2], data);
+                        if (d != null && d.length < data.length / 2
+                            && (delta == null || d.length < delta.length)) {
+                            delta = d;
+                            base = w;
+                        }
+                    }
+                }
+                ByteArrayOutputStream entry = new ByteArrayOutputStream();
+                int depth = 0;
+                if (delta == null) {
+                    entry.write(type);
+                    Delta.writeVarint(entry, data.length);
+                    entry.write(deflate(data));
+                } else {
+                    depth = (Integer) base[3] + 1;
+                    entry.write(DELTA);
+                    Delta.writeVarint(entry, delta.length);
+                    Delta.writeVarint(entry, offset - offsets.get(base[0]));
+                    Delta.writeVarint(entry, data.length);
+                    entry.write(deflate(delta));
+                }
+                offsets.put(id, offset);
+                entry.writeTo(out);
+                offset += entry.size();
+                window.add(new Object[] {id, type, data, depth});
+                if (window.size() > WINDOW) {
+                    window.remove(0);
+                }
+            }
+            out.flush();
+            file.write(md.digest());
+        } catch (IOException e) {
+            tmp.delete();
+            throw error(e.getMessage());
+        }
+        String name = "pack-" + hashOf(tmp);
+        File pack = join(folder(), name + ".pack"),
+            idx = join(folder(), name + ".idx");
+        writeIndex(idx, packed, offsets);
+        try {
+            Files.move(tmp.toPath(), pack.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw error(e.getMessage());
+        }
+        return new Pack(pack, idx);
+    }
+
+    /** Returns true if every object in this pack is found through the
+     *  index and reads back as the contents its ID is the hash of.
+     */
+    boolean verify() {
+        for (int i = 0; i < _count; i += 1) {
+            String id = id(i);
+            if (find(id) != i) {
+                return false;
+            }
+            MessageDigest md = ObjectStore.sha1Digest();
+            try (InputStream in = open(i)) {
+                byte[] buf = new byte[1 << 16];
+                for (int n = in.read(buf); n >= 0; n = in.read(buf)) {
+                    md.update(buf, 0, n);
+                }
+            } catch (IOException | GitletException e) {
+                return false;
+            }
+            if (!ObjectId.read(md.digest(), 0).hex().equals(id)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Writes the index file IDX for a pack holding OBJECTS, a map from
+     *  IDs to types, at the given OFFSETS.
+     */
+    private static void writeIndex(File idx, Map<String, Byte> objects,
+                                   Map<String, Long> offsets) {
+        String[] ids = objects.keySet().toArray(new String[0]);
+        Arrays.sort(ids);
+        int[] fanout = new int[256];
+        for (String id : ids) {
+            fanout[Integer.parseInt(id.substring(0, 2), 16)] += 1;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(IDX_MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(ids.length);
+            int total = 0;
+            for (int n : fanout) {
+                total += n;
+                out.writeInt(total);
+            }
+            for (String id : ids) {
+                out.write(ObjectId.fromHex(id).bytes());
+            }
+            for (String id : ids) {
+                out.writeLong(offsets.get(id));
+            }
+            for (String id : ids) {
+                out.writeByte(objects.get(id));
+            }
+        } catch (IOException e) {
+            throw error(e.getMessage());
+        }
+        writeContents(idx, bytes.toByteArray());
+    }
+
+    /** Writes the entry of the blob ID, whose contents are SIZE bytes
+     *  long, to OUT, deflating it as it is read. Returns the number of
+     *  bytes written.
+     */
+    private static long writeWhole(String id, long size, DataOutputStream out)
+        throws IOException {
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        header.write(ObjectStore.BLOB);
+        Delta.writeVarint(header, size);
+        header.writeTo(out);
+        Deflater deflater = new Deflater();
+        try (InputStream in = ObjectStore.open(id)) {
+            DeflaterOutputStream deflated =
+                new DeflaterOutputStream(out, deflater, 1 << 16);
+            in.transferTo(deflated);
+            deflated.finish();
+            return header.size() + deflater.getBytesWritten();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /** Returns DATA compressed with deflate. */
+    private static byte[] deflate(byte[] data) {
+        Deflater deflater = new Deflater();
+        deflater.setInput(data);
+        deflater.finish();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[1 << 16];
+        while (!deflater.finished()) {
+            out.write(buf, 0, deflater.deflate(buf));
+        }
+        deflater.end();
+        return out.toByteArray();
+    }
+
+    /** Returns the hash stored in the last bytes of the pack file F. */
+    private static String hashOf(File f) {
+        try (FileChannel ch = FileChannel.open(f.toPath(),
+                StandardOpenOption.READ)) {
+            ByteBuffer b = ByteBuffer.allocate(ID_BYTES);
+            ch.read(b, ch.size() - ID_BYTES);
+            return ObjectId.read(b.array(), 0).hex();
+        } catch (IOException e) {
+            throw error(e.getMessage());
+        }
+    }
+
+    /** Returns the contents of file F, mapped into memory. */
+    private static MappedByteBuffer map(File f) {
+        try (FileChannel ch = FileChannel.open(f.toPath(),
+                StandardOpenOption.READ)) {
+            if (ch.size() > Integer.MAX_VALUE) {
+                throw error("%s is too large to read.", f.getName());
+            }
+            return ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+        } catch (IOException e) {
+            throw error(e.getMessage());
+        }
+    }
+
+    /** The file that holds the pack. */
+    private final File _file;
+
+    /** The file that holds the pack's index. */
+    private final File _indexFile;
+
+    /** The contents of the pack. */
+    private final MappedByteBuffer _pack;
+
+    /** The contents of the pack's index. */
+    private final MappedByteBuffer _idx;
+
+    /** The number of objects in the pack. */
+    private final int _count;
+
+    /** The inflater of the pack's entries. */
+    private final Inflater _inflater = new Inflater();
+
+    /** Recently resolved entries, by offset, used as delta bases. */
+    private final Map<Long, byte[]> _bases =
+        new LinkedHashMap<Long, byte[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, byte[]> e) {
+                return size() > BASE_CACHE;
+            }
+        };
+
+}
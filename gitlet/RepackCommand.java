@@ -0,0 +1,115 @@
+package gitlet;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import static gitlet.Utils.error;
+import static gitlet.Utils.gitletDir;
+
+/** Contains the logic needed to move every object of the repository,
+ *  loose or already packed, into new packs, and delete the loose objects
+ *  and old packs they replace once the new packs have been read back.
+ * @author Sam Stahl
+ */
+public class RepackCommand extends Command {
+
+    /** Initializes the command with ARGS to ensure there are no
+     *  other arguments.
+     */
+    RepackCommand(String[] args) {
+        if (!gitletDir().exists()) {
+            System.out.println("Not in an initialized Gitlet directory.");
+            setFailed();
+        } else if (args.length != 1) {
+            System.out.println("Incorrect operands.");
+            setFailed();
+        }
+    }
+
+    @Override
+    void execute() {
+        if (failed()) {
+            return;
+        }
+        List<Pack> packs = repack(new ObjectIdSet());
+        if (packs.isEmpty()) {
+            System.out.println("Nothing to pack.");
+            return;
+        }
+        for (Pack p : packs) {
+            System.out.printf("Packed %d objects into %s.%n", p.count(),
+                    p.file().getName());
+        }
+    }
+
+    /** Moves every object of the repository but those in DROP into new
+     *  packs, deleting the loose objects and old packs they replace, so
+     *  that packed objects in DROP are gone. Nothing is deleted until
+     *  every new pack has been opened and each of its objects read back
+     *  and hashed; a blob too large for any pack is kept loose. Returns
+     *  the new packs, which are none if there was nothing to pack.
+     */
+    static List<Pack> repack(ObjectIdSet drop) {
+        Map<String, Byte> objects = new TreeMap<>();
+        Map<String, String> names = new HashMap<>();
+        for (byte type : new byte[] {ObjectStore.COMMIT, ObjectStore.TREE,
+                                     ObjectStore.BLOB}) {
+            for (String id : ObjectStore.ids(type)) {
+                if (drop.contains(id)) {
+                    continue;
+                }
+                objects.put(id, type);
+                if (type == ObjectStore.TREE) {
+                    Tree.read(id).names(names);
+                }
+            }
+        }
+        if (objects.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<Pack> old = ObjectStore.packs();
+        Set<File> oldFiles = new HashSet<>();
+        for (Pack p : old) {
+            oldFiles.add(p.file());
+        }
+        List<Pack> packs = Pack.write(objects, names);
+        Set<File> kept = new HashSet<>();
+        ObjectIdSet packed = new ObjectIdSet();
+        for (Pack p : packs) {
+            kept.add(p.file());
+            if (!p.verify()) {
+                for (Pack q : packs) {
+                    if (!oldFiles.contains(q.file())) {
+                        q.delete();
+                    }
+                }
+                throw error("Pack %s did not read back; nothing was "
+                            + "deleted.", p.file().getName());
+            }
+            for (int i = 0; i < p.count(); i += 1) {
+                packed.add(p.id(i));
+            }
+        }
+        for (Map.Entry<String, Byte> e : objects.entrySet()) {
+            if (packed.contains(e.getKey())) {
+                ObjectStore.deleteLoose(e.getValue(), e.getKey());
+            } else {
+                ObjectStore.unpack(e.getKey());
+            }
+        }
+        for (Pack p : old) {
+            if (!kept.contains(p.file())) {
+                p.delete();
+            }
+        }
+        ObjectStore.reloadPacks();
+        return packs;
+    }
+
+}
@@ -0,0 +1,973 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static gitlet.Utils.*;
+
+/** A Gitlet repository, and the state of it as seen by the command
+ *  running in it. The name of the head branch, the head commits of
+ *  branches, the stage, the listing of the working directory, the commit
+ *  graph, the packs and the commits read are each read from disk the
+ *  first time they are needed and remembered until the command ends,
+ *  however often the command and its helpers ask for them. Every change
+ *  to them also goes through here, so what is remembered never goes
+ *  stale. It also counts the disk reads made while the command runs.
+ *
+ *  The public methods drive the repository from other Java code, returning
+ *  commits and results rather than printing and throwing GitletException
+ *  on failure; the commands of the command line are thin wrappers over
+ *  them. Each call is a command of its own, which keeps whatever the last
+ *  call read unless another process has changed it since. open and init
+ *  hand out one shared instance per directory until it is closed, which
+ *  serves one call at a time, so threads using the same repository take
+ *  turns; any number of repositories may be used at once from different
+ *  threads, since each thread runs its commands in a context of its own.
+ * @author Sam Stahl
+ */
+public class Repository {
+
+    /** The time in milliseconds within which a file may be written twice
+     *  with the same modification time.
+     */
+    private static final long RACY = 50;
+
+    /** The number of interned paths beyond which a new command forgets
+     *  them.
+     */
+    private static final int MAX_PATHS = 1 << 18;
+
+    /** A repository whose working directory is DIR. */
+    private Repository(File dir) {
+        _dir = dir;
+        _gitlet = join(dir, ".gitlet");
+        _headFile = join(_gitlet, "HEAD.txt");
+        _branches = join(_gitlet, "branches");
+    }
+
+    /** Returns the repository whose working directory is DIR. Every call
+     *  for the same directory, however it is named, returns the same
+     *  instance until it is closed, whose methods lock it, so that calls
+     *  from different threads never run in one repository at once.
+     */
+    public static Repository open(File dir) {
+        File key = canonical(dir);
+        synchronized (_open) {
+            Repository repo = _open.get(key);
+            if (repo == null) {
+                repo = new Repository(dir.getAbsoluteFile());
+                if (!repo._gitlet.isDirectory()) {
+                    throw error("Not in an initialized Gitlet directory.");
+                }
+                _open.put(key, repo);
+            }
+            return repo;
+        }
+    }
+
+    /** Returns the canonical form of directory DIR. */
+    private static File canonical(File dir) {
+        try {
+            return dir.getCanonicalFile();
+        } catch (IOException e) {
+            throw error(e.getMessage());
+        }
+    }
+
+    /** Creates a repository whose working directory is DIR, with only the
+     *  initial commit on the branch master, and returns it. open then
+     *  returns the same instance for DIR. Of two processes or threads
+     *  initializing DIR at once, only the one that creates its .gitlet
+     *  folder goes on.
+     */
+    public static Repository init(File dir) {
+        Repository repo = new Repository(dir.getAbsoluteFile());
+        synchronized (repo) {
+            synchronized (_open) {
+                if (!repo._gitlet.mkdir()) {
+                    if (repo._gitlet.exists()) {
+                        throw error("A Gitlet version-control system "
+                                + "already exists in the current directory.");
+                    }
+                    throw error("Cannot create %s.", repo._gitlet);
+                }
+                _open.put(canonical(dir), repo);
+            }
+            join(repo._gitlet, "commits").mkdir();
+            join(repo._gitlet, "trees").mkdir();
+            join(repo._gitlet, "files").mkdir();
+            repo._branches.mkdir();
+            writeContents(repo._headFile, "master");
+            Repository outer = repo.enter();
+            boolean done = false;
+            try {
+                Commit.initialCommit();
+                done = true;
+            } finally {
+                repo.exit(outer, done);
+            }
+        }
+        return repo;
+    }
+
+    /** Closes this repository, once any call running in it has returned,
+     *  dropping everything it has read. open then returns a new instance
+     *  for its directory, and any further call through this one throws
+     *  a GitletException.
+     */
+    public synchronized void close() {
+        synchronized (_open) {
+            _open.remove(canonical(_dir), this);
+        }
+        _closed = true;
+        _headBranch = null;
+        _head = null;
+        _heads.clear();
+        _stage = null;
+        _graph = null;
+        _packs = null;
+        _commits.clear();
+        _paths.clear();
+        _stamps.clear();
+    }
+
+    /** Returns the context of the command running in this thread. */
+    static Repository current() {
+        if (_current.get() == null) {
+            freshContext();
+        }
+        return _current.get();
+    }
+
+    /** Starts a fresh context for a new command, forgetting everything
+     *  the last one read. The command runs in the directory gitlet was
+     *  started in.
+     */
+    static void freshContext() {
+        use(new File(System.getProperty("user.dir")));
+    }
+
+    /** Starts a fresh context for the commands to be run in this thread
+     *  in the working directory DIR, forgetting everything the last one
+     *  read.
+     */
+    static void use(File dir) {
+        _current.set(new Repository(dir.getAbsoluteFile()));
+    }
+
+    /** Starts a command in this context. What the last command read is
+     *  kept unless a file it came from has changed since it was stamped,
+     *  just before it was read or just after this context wrote it, which
+     *  means another process changed it, or unless the last command was
+     *  never sealed because it failed. The working directory is always
+     *  listed afresh. The paths interned so far, and the commits that
+     *  share them, are forgotten once there are more than MAX_PATHS.
+     */
+    void begin() {
+        if (_paths.size() > MAX_PATHS) {
+            _paths.clear();
+            _commits.clear();
+        }
+        Set<File> changed = new HashSet<>();
+        for (Map.Entry<File, String> e : _stamps.entrySet()) {
+            if (!_sealed || !stampOf(e.getKey()).equals(e.getValue())) {
+                changed.add(e.getKey());
+            }
+        }
+        _stamps.keySet().removeAll(changed);
+        boolean refs = _sealed;
+        if (!_sealed || changed.contains(_headFile)) {
+            _headBranch = null;
+            _head = null;
+            refs = false;
+        }
+        for (File f : changed) {
+            if (f.getParentFile().equals(_branches)) {
+                String name = f.getName();
+                _heads.remove(name.substring(0, name.length() - 4));
+                _head = null;
+                refs = false;
+            }
+        }
+        if (!_sealed) {
+            _heads.clear();
+        }
+        if (!refs || changed.contains(Stage.indexFile())) {
+            _stage = null;
+        }
+        if (!_sealed || changed.contains(join(_gitlet, "commit-graph"))) {
+            _graph = null;
+        }
+        if (!_sealed || changed.contains(Pack.folder())) {
+            _packs = null;
+        }
+        _cwdFiles = null;
+        _cwdSet = null;
+        _monitor = null;
+        _monitorAsked = false;
+        _sealed = false;
+        _reads.set(0);
+    }
+
+    /** Hands what this context read on to the next command, once the
+     *  command that used it has ended without failing.
+     */
+    void seal() {
+        _sealed = true;
+    }
+
+    /** Records the stamp of file F, which the running command is about
+     *  to read or has just written, so that the next command knows
+     *  whether another process has changed it since.
+     */
+    void stamp(File f) {
+        _stamps.put(f, stampOf(f));
+    }
+
+    /** Returns a string that changes whenever file F is written, made
+     *  of its size, modification time and inode. A file modified in the
+     *  last RACY milliseconds could be written again without its
+     *  modification time changing, so its stamp never matches another.
+     */
+    private static String stampOf(File f) {
+        BasicFileAttributes a;
+        Object inode;
+        try {
+            a = Files.readAttributes(f.toPath(), BasicFileAttributes.class);
+            try {
+                inode = Files.getAttribute(f.toPath(), "unix:ino");
+            } catch (UnsupportedOperationException
+                     | IllegalArgumentException e) {
+                inode = a.fileKey();
+            }
+        } catch (IOException e) {
+            return "missing";
+        }
+        if (a.lastModifiedTime().toMillis()
+            >= System.currentTimeMillis() - RACY) {
+            return "racy " + System.nanoTime();
+        }
+        return a.size() + "/" + a.lastModifiedTime() + "/" + inode;
+    }
+
+    /** Records that the running command read from disk once. */
+    static void noteRead() {
+        current()._reads.incrementAndGet();
+    }
+
+    /** Returns the number of disk reads made by the running command. */
+    long reads() {
+        return _reads.get();
+    }
+
+    /** Runs TASK in this thread as a worker of the command running in
+     *  REPO, which is its context meanwhile. TASK may only read objects.
+     */
+    static void work(Repository repo, Runnable task) {
+        Repository outer = _current.get();
+        _current.set(repo);
+        try {
+            task.run();
+        } finally {
+            if (outer == null) {
+                _current.remove();
+            } else {
+                _current.set(outer);
+            }
+        }
+    }
+
+    /** Returns the working directory. */
+    public File dir() {
+        return _dir;
+    }
+
+    /** Returns the main directory of the Gitlet repository. */
+    File gitletDir() {
+        return _gitlet;
+    }
+
+    /** Returns the name of the head branch. */
+    String headBranch() {
+        if (_headBranch == null) {
+            stamp(_headFile);
+            _headBranch = readContentsAsString(_headFile);
+        }
+        return _headBranch;
+    }
+
+    /** Makes BRANCH the head branch. */
+    void setHeadBranch(String branch) {
+        writeRef(_headFile, branch);
+        stamp(_headFile);
+        _headBranch = branch;
+        _head = null;
+    }
+
+    /** Returns the ID of the head commit of BRANCH. */
+    String headID(String branch) {
+        String id = _heads.get(branch);
+        if (id == null) {
+            File f = join(_branches, branch + ".txt");
+            stamp(f);
+            id = readContentsAsString(f);
+            _heads.put(branch, id);
+        }
+        return id;
+    }
+
+    /** Returns the ID of the head commit of the head branch. */
+    String headID() {
+        return headID(headBranch());
+    }
+
+    /** Returns the head commit of BRANCH. */
+    Commit head(String branch) {
+        return commits().get(headID(branch));
+    }
+
+    /** Returns the head commit of the head branch. */
+    Commit head() {
+        if (_head == null) {
+            _head = head(headBranch());
+        }
+        return _head;
+    }
+
+    /** Makes C the head commit of BRANCH, creating BRANCH if needed. */
+    void setHead(Commit c, String branch) {
+        File f = join(_branches, branch + ".txt");
+        writeRef(f, c.id());
+        stamp(f);
+        _heads.put(branch, c.id());
+        if (branch.equals(_headBranch)) {
+            _head = c;
+        }
+    }
+
+    /** Makes the ref file F hold VALUE, replacing it only once the new
+     *  contents are complete, so that it is never seen half written.
+     */
+    private void writeRef(File f, String value) {
+        File tmp = new File(f.getPath() + ".tmp");
+        writeContents(tmp, value);
+        try {
+            Files.move(tmp.toPath(), f.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw error(e.getMessage());
+        }
+    }
+
+    /** Returns true if BRANCH exists. */
+    boolean branchExists(String branch) {
+        return _heads.containsKey(branch)
+            || join(_branches, branch + ".txt").exists();
+    }
+
+    /** Deletes BRANCH, which must not be the head branch. */
+    void deleteBranch(String branch) {
+        File f = join(_branches, branch + ".txt");
+        f.delete();
+        stamp(f);
+        _heads.remove(branch);
+    }
+
+    /** Returns the stage. */
+    Stage stage() {
+        if (_stage == null) {
+            stamp(Stage.indexFile());
+            _stage = new Stage();
+        }
+        return _stage;
+    }
+
+    /** Returns the plain files in the working directory and all its
+     *  folders but .gitlet, as they were the first time this command
+     *  asked for them.
+     */
+    List<File> cwdFiles() {
+        if (_cwdFiles == null) {
+            _cwdFiles = new ArrayList<>();
+            plainFilesUnder(_dir, _cwdFiles);
+        }
+        return _cwdFiles;
+    }
+
+    /** Adds to FILES the plain files in the folder DIR and all the
+     *  folders under it, leaving out the .gitlet folder.
+     */
+    private void plainFilesUnder(File dir, List<File> files) {
+        if (dir.equals(_gitlet)) {
+            return;
+        }
+        noteRead();
+        File[] children = dir.listFiles();
+        if (children == null) {
+            return;
+        }
+        for (File f : children) {
+            if (f.isFile()) {
+                files.add(f);
+            } else if (f.isDirectory()) {
+                plainFilesUnder(f, files);
+            }
+        }
+    }
+
+    /** Returns what the filesystem monitor saw change since the last
+     *  status, asking it the first time this command needs to know, or
+     *  null if no monitor is running.
+     */
+    FsMonitor.Changes monitor() {
+        if (!_monitorAsked) {
+            _monitor = FsMonitor.changes();
+            _monitorAsked = true;
+        }
+        return _monitor;
+    }
+
+    /** Returns the untracked files in the working directory. If the
+     *  filesystem monitor can say which files changed since the last
+     *  status, only those, the files under the folders it names and the
+     *  files untracked then are looked at.
+     */
+    List<File> untracked() {
+        Stage stage = stage();
+        List<File> untracked = new ArrayList<>();
+        FsMonitor.Changes changes = monitor();
+        if (changes == null || changes.files() == null) {
+            for (File f : cwdFiles()) {
+                if (stage.untracked(f)) {
+                    untracked.add(f);
+                }
+            }
+        } else {
+            List<File> files = new ArrayList<>();
+            for (File f : changes.files()) {
+                if (f.isDirectory()) {
+                    plainFilesUnder(f, files);
+                } else if (f.isFile()) {
+                    files.add(f);
+                }
+            }
+            for (File f : new HashSet<>(files)) {
+                if (stage.untracked(f)) {
+                    untracked.add(f);
+                }
+            }
+        }
+        return untracked;
+    }
+
+    /** Returns the files the filesystem monitor saw change since the
+     *  last status, along with those that status looked at, or null if
+     *  any file may have changed.
+     */
+    private Set<File> candidates() {
+        FsMonitor.Changes changes = monitor();
+        return changes == null ? null : changes.files();
+    }
+
+    /** Returns true if the working directory contains file F. */
+    boolean cwdContains(File f) {
+        if (_cwdSet == null) {
+            _cwdSet = new HashSet<>(cwdFiles());
+        }
+        return _cwdSet.contains(f);
+    }
+
+    /** Returns the commit graph, or null if it is not loaded. */
+    CommitGraph graph() {
+        return _graph;
+    }
+
+    /** Makes GRAPH the loaded commit graph. */
+    void setGraph(CommitGraph graph) {
+        _graph = graph;
+    }
+
+    /** Returns the open packs, or null if they are not open. */
+    List<Pack> packs() {
+        return _packs;
+    }
+
+    /** Makes PACKS the open packs. */
+    void setPacks(List<Pack> packs) {
+        _packs = packs;
+    }
+
+    /** Returns the paths of the files of the commits read so far, each
+     *  mapped to itself, through which the commits share one copy of
+     *  each path. They are kept from one command to the next until there
+     *  are more than MAX_PATHS.
+     */
+    Map<String, String> paths() {
+        return _paths;
+    }
+
+    /** Returns the commits read so far. */
+    CommitCache commits() {
+        return _commits;
+    }
+
+    /** Returns a summary of this context's counters. */
+    String stats() {
+        return String.format("repository: %d disk reads", _reads.get());
+    }
+
+    /** Stages the file at PATH, relative to the working directory, or
+     *  every file under it if it is a folder.
+     */
+    public synchronized void add(String path) {
+        Repository outer = enter();
+        boolean done = false;
+        try {
+            File f = join(_dir, path).toPath().normalize().toFile();
+            if (!f.exists()) {
+                throw error("File does not exist.");
+            }
+            if (f.isDirectory()) {
+                List<File> files = new ArrayList<>();
+                plainFilesUnder(f, files);
+                stage().addToStage(files);
+            } else {
+                stage().addToStage(f);
+            }
+            done = true;
+        } finally {
+            exit(outer, done);
+        }
+    }
+
+    /** Commits the staged changes with MESSAGE to the head branch and
+     *  returns the new commit.
+     */
+    public synchronized Commit commit(String message) {
+        Repository outer = enter();
+        boolean done = false;
+        try {
+            if (message.equals("")) {
+                throw error("Please enter a commit message.");
+            }
+            Commit c = new Commit(headID(), message, headBranch());
+            c.commit();
+            done = true;
+            return c;
+        } finally {
+            exit(outer, done);
+        }
+    }
+
+    /** Makes the working directory hold exactly the files of the head
+     *  commit of BRANCH, and makes BRANCH the head branch. Only the files
+     *  that differ are written or deleted; returns the update made.
+     */
+    public synchronized TreeUpdate checkout(String branch) {
+        Repository outer = enter();
+        boolean done = false;
+        try {
+            if (headBranch().equals(branch)) {
+                throw error("No need to checkout the current branch.");
+            }
+            if (!branchExists(branch)) {
+                throw error("No such branch exists.");
+            }
+            Stage stage = stage();
+            if (!untracked().isEmpty()) {
+                throw error("There is an untracked file in the way; "
+                        + "delete it, or add and commit it first.");
+            }
+            TreeUpdate update = new TreeUpdate(stage, head(), head(branch),
+                    candidates());
+            setHeadBranch(branch);
+            update.apply();
+            stage.clear();
+            done = true;
+            return update;
+        } finally {
+            exit(outer, done);
+        }
+    }
+
+    /** Makes the working directory hold exactly the files of the commit
+     *  with the full or abbreviated ID COMMIT, and makes that commit the
+     *  head of the head branch. Only the files that differ are written or
+     *  deleted, and the branch is moved once they all have been; returns
+     *  the update made. Untracked files are in the way, except those a
+     *  merge commit deleted, which resetting to it deletes too.
+     */
+    public synchronized TreeUpdate reset(String commit) {
+        Repository outer = enter();
+        boolean done = false;
+        try {
+            Commit c = getCommitByID(commit);
+            if (c == null) {
+                throw error("No commit with that id exists.");
+            }
+            Stage stage = stage();
+            List<File> merged = new ArrayList<>();
+            for (File f : untracked()) {
+                if (!c.toBeRemoved(f)) {
+                    throw error("There is an untracked file in the way; "
+                            + "delete it, or add and commit it first");
+                }
+                merged.add(f);
+            }
+            TreeUpdate update = new TreeUpdate(stage, head(), c,
+                    candidates());
+            for (File f : merged) {
+                update.delete(f);
+            }
+            update.apply();
+            setHead(c, headBranch());
+            stage.clear();
+            done = true;
+            return update;
+        } finally {
+            exit(outer, done);
+        }
+    }
+
+    /** Restores the file at PATH, relative to the working directory, to
+     *  its version in the commit with the full or abbreviated ID COMMIT,
+     *  or in the head commit if COMMIT is null.
+     */
+    public synchronized void checkout(String commit, String path) {
+        Repository outer = enter();
+        boolean done = false;
+        try {
+            Commit c = commit == null ? head() : getCommitByID(commit);
+            if (c == null) {
+                throw error("No commit with that id exists.");
+            }
+            File f = join(_dir, path);
+            String blob = c.getVersionOf(f);
+            if (blob == null) {
+                throw error("File does not exist in that commit.");
+            }
+            ObjectStore.copyTo(blob, f);
+            done = true;
+        } finally {
+            exit(outer, done);
+        }
+    }
+
+    /** Merges the head commit of BRANCH into the head branch. */
+    public synchronized MergeResult merge(String branch) {
+        return merge(branch, false);
+    }
+
+    /** Returns how merging the head commit of BRANCH into the head branch
+     *  would go, without changing anything. The plan of a merge that would
+     *  make a commit says what it would do with each path.
+     */
+    public synchronized MergeResult planMerge(String branch) {
+        return merge(branch, true);
+    }
+
+    /** Merges the head commit of BRANCH into the head branch, or only
+     *  plans to if DRYRUN.
+     */
+    private MergeResult merge(String branch, boolean dryRun) {
+        Repository outer = enter();
+        boolean done = false;
+        try {
+            Stage stage = stage();
+            if (!stage.getAddedFiles().isEmpty()
+                || !stage.getRemovedFiles().isEmpty()) {
+                throw error("You have uncommitted changes.");
+            } else if (branch.equals(headBranch())) {
+                throw error("Cannot merge a branch with itself.");
+            } else if (!branchExists(branch)) {
+                throw error("A branch with that name does not exist.");
+            }
+            if (!untracked().isEmpty()) {
+                throw error("There is an untracked file in the way; "
+                        + "delete it, or add and commit it first.");
+            }
+            Commit other = head(branch);
+            int base = MergeBase.one(CommitGraph.find(headID()),
+                    CommitGraph.find(other.id()));
+            MergeResult result;
+            if (base == CommitGraph.NONE) {
+                throw error("No common ancestor.");
+            } else if (CommitGraph.id(base).equals(other.id())) {
+                result = new MergeResult(MergeResult.Outcome.ANCESTOR,
+                        head());
+            } else if (CommitGraph.id(base).equals(headID())) {
+                if (!dryRun) {
+                    checkout(branch);
+                }
+                result = new MergeResult(MergeResult.Outcome.FAST_FORWARD,
+                        head());
+            } else {
+                MergePlan plan = new MergePlan(
+                        commits().get(CommitGraph.id(base)), head(), other);
+                Commit merge = null;
+                if (!dryRun) {
+                    merge = new Commit(headID(), "Merged " + branch
+                            + " into " + headBranch() + ".", headBranch());
+                    merge.merge(other, plan);
+                }
+                result = new MergeResult(MergeResult.Outcome.MERGED, merge,
+                        plan);
+            }
+            done = true;
+            return result;
+        } finally {
+            exit(outer, done);
+        }
+    }
+
+    /** Reads every commit and tree, without changing anything, and
+     *  throws a GitletException naming the first that cannot be read.
+     *  upgrade checks this before it touches the repository, so that it
+     *  never stops with only part of the repository upgraded.
+     */
+    public synchronized void checkObjects() {
+        Repository outer = enter();
+        boolean done = false;
+        try {
+            for (String id : ObjectStore.ids(ObjectStore.COMMIT)) {
+                try {
+                    Commit.decode(ObjectStore.load(ObjectStore.COMMIT, id))
+                        .parentID();
+                } catch (IllegalArgumentException
+                         | IndexOutOfBoundsException e) {
+                    throw error("Cannot read commit %s.", id);
+                }
+            }
+            for (String id : ObjectStore.ids(ObjectStore.TREE)) {
+                try {
+                    Tree.decode(ObjectStore.load(ObjectStore.TREE, id));
+                } catch (IllegalArgumentException
+                         | IndexOutOfBoundsException e) {
+                    throw error("Cannot read tree %s.", id);
+                }
+            }
+            done = true;
+        } finally {
+            exit(outer, done);
+        }
+    }
+
+    /** Rewrites every commit stored by Java serialization in the binary
+     *  format, along with every descendant of one, whose parents' IDs
+     *  change with them, and points the branches at the new commits. The
+     *  old commits are deleted, repacking if any were packed. A commit of
+     *  the first gitlet release, which kept its files in a map, gets a
+     *  tree built from them. Returns the number of commits rewritten. The
+     *  rewritten commits are stored before any branch moves or old commit
+     *  is deleted, and rewriting a commit again gives the same ID, so an
+     *  upgrade that was cut short is finished by running it again.
+     */
+    public synchronized int upgradeCommits() {
+        Repository outer = enter();
+        boolean done = false;
+        try {
+            Map<String, String> renamed = new HashMap<>();
+            List<String> stack = new ArrayList<>();
+            for (String id : ObjectStore.ids(ObjectStore.COMMIT)) {
+                stack.add(id);
+                while (!stack.isEmpty()) {
+                    String top = stack.get(stack.size() - 1);
+                    if (renamed.containsKey(top)) {
+                        stack.remove(stack.size() - 1);
+                        continue;
+                    }
+                    byte[] bytes = ObjectStore.load(ObjectStore.COMMIT, top);
+                    Commit c = Commit.decode(bytes);
+                    String parent = c.parentID(), merge = c.mergeParentID();
+                    if (parent != null && !renamed.containsKey(parent)) {
+                        stack.add(parent);
+                    } else if (merge != null && !renamed.containsKey(merge)) {
+                        stack.add(merge);
+                    } else {
+                        String p = parent == null ? null : renamed.get(parent),
+                            m = merge == null ? null : renamed.get(merge);
+                        if (Commit.isLegacy(bytes)
+                            || p != null && !p.equals(parent)
+                            || m != null && !m.equals(merge)) {
+                            renamed.put(top, c.rewrite(p, m).id());
+                        } else {
+                            renamed.put(top, top);
+                        }
+                        stack.remove(stack.size() - 1);
+                    }
+                }
+            }
+            ObjectIdSet replaced = new ObjectIdSet();
+            List<String> old = new ArrayList<>();
+            for (Map.Entry<String, String> e : renamed.entrySet()) {
+                if (!e.getKey().equals(e.getValue())) {
+                    replaced.add(e.getKey());
+                    old.add(e.getKey());
+                }
+            }
+            if (!replaced.isEmpty()) {
+                File[] refs = _branches.listFiles();
+                for (File ref : refs == null ? new File[0] : refs) {
+                    String id = readContentsAsString(ref);
+                    if (replaced.contains(id)) {
+                        writeRef(ref, renamed.get(id));
+                    }
+                }
+                _heads.clear();
+                _head = null;
+                _commits.clear();
+                boolean packed = false;
+                for (String id : old) {
+                    ObjectStore.deleteLoose(ObjectStore.COMMIT, id);
+                    packed |= ObjectStore.contains(ObjectStore.COMMIT, id);
+                }
+                if (packed) {
+                    RepackCommand.repack(replaced);
+                }
+                CommitIndex.rebuild();
+                CommitGraph.rebuild();
+            }
+            done = true;
+            return replaced.size();
+        } finally {
+            exit(outer, done);
+        }
+    }
+
+    /** Returns the head commit and its first parents, newest first. */
+    public synchronized List<Commit> log() {
+        Repository outer = enter();
+        boolean done = false;
+        try {
+            List<Commit> log = new ArrayList<>();
+            for (int i = CommitGraph.find(headID()); i != CommitGraph.NONE;
+                 i = CommitGraph.parent(i)) {
+                log.add(commits().get(CommitGraph.id(i)));
+            }
+            done = true;
+            return log;
+        } finally {
+            exit(outer, done);
+        }
+    }
+
+    /** Makes this the context of the command running in this thread,
+     *  starting a command in it unless it already is, and returns the
+     *  context it replaces.
+     */
+    private Repository enter() {
+        if (_closed) {
+            throw error("Repository %s is closed.", _dir);
+        } else if (!_gitlet.isDirectory()) {
+            throw error("Not in an initialized Gitlet directory.");
+        }
+        Repository outer = _current.get();
+        if (outer != this) {
+            _current.set(this);
+            begin();
+        }
+        return outer;
+    }
+
+    /** Ends the call that entered this context, which replaced OUTER,
+     *  sealing what it read if it is DONE.
+     */
+    private void exit(Repository outer, boolean done) {
+        if (outer == this) {
+            return;
+        } else if (done) {
+            seal();
+        }
+        if (outer == null) {
+            _current.remove();
+        } else {
+            _current.set(outer);
+        }
+    }
+
+    /** The repositories handed out by open and init and not yet closed,
+     *  by the canonical form of their working directories.
+     */
+    private static final Map<File, Repository> _open = new HashMap<>();
+
+    /** The context of the command running in each thread. */
+    private static final ThreadLocal<Repository> _current =
+        new ThreadLocal<>();
+
+    /** The working directory. */
+    private final File _dir;
+
+    /** The main directory of the Gitlet repository. */
+    private final File _gitlet;
+
+    /** The file that names the head branch. */
+    private final File _headFile;
+
+    /** The folder that holds the head commit ID of each branch. */
+    private final File _branches;
+
+    /** The name of the head branch, once read. */
+    private String _headBranch;
+
+    /** The head commit of the head branch, once read. */
+    private Commit _head;
+
+    /** The head commit IDs of the branches read so far, by name. */
+    private final Map<String, String> _heads = new HashMap<>();
+
+    /** The stage, once read. */
+    private Stage _stage;
+
+    /** The files in the working directory, once listed. */
+    private List<File> _cwdFiles;
+
+    /** The files in the working directory, as a set. */
+    private Set<File> _cwdSet;
+
+    /** What the filesystem monitor saw change, once asked. */
+    private FsMonitor.Changes _monitor;
+
+    /** True once the filesystem monitor has been asked. */
+    private boolean _monitorAsked;
+
+    /** The commit graph, once loaded. */
+    private CommitGraph _graph;
+
+    /** The packs, once opened. */
+    private List<Pack> _packs;
+
+    /** The commits read so far. */
+    private final CommitCache _commits = new CommitCache();
+
+    /** The paths of the files of the commits read so far. */
+    private final Map<String, String> _paths = new HashMap<>();
+
+    /** The stamps of the files this context was built from, each taken
+     *  just before the file was read or just after it was written.
+     */
+    private final Map<File, String> _stamps = new ConcurrentHashMap<>();
+
+    /** True if the last command in this context ended without failing. */
+    private boolean _sealed;
+
+    /** True once this repository has been closed. */
+    private boolean _closed;
+
+    /** The number of disk reads made so far, by the command's thread and
+     *  its workers.
+     */
+    private final AtomicLong _reads = new AtomicLong();
+
+}
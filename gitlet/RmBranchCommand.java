@@ -1,7 +1,5 @@
 package gitlet;
 
-import java.io.File;
-
 import static gitlet.Utils.*;
 
 /** Contains the logic needed to remove a branch.
@@ -14,7 +12,7 @@ public class RmBranchCommand extends Command {
      */
     RmBranchCommand(String[] args) {
         _args = args;
-        if (!GITLET.exists()) {
+        if (!gitletDir().exists()) {
             System.out.println("Not in an initialized Gitlet directory.");
             setFailed();
         } else if (_args.length != 2) {
@@ -26,8 +24,7 @@ public class RmBranchCommand extends Command {
     @Override
     void execute() {
         if (!failed()) {
-            File branch = join(GITLET, "branches", _args[1] + ".txt");
-            if (!branch.exists()) {
+            if (!branchExists(_args[1])) {
                 System.out.println("A branch with that name does not exist.");
                 return;
             }
@@ -35,7 +32,7 @@ public class RmBranchCommand extends Command {
                 System.out.println("Cannot remove the current branch.");
                 return;
             }
-            branch.delete();
+            Repository.current().deleteBranch(_args[1]);
         }
     }
 
@@ -2,8 +2,8 @@ package gitlet;
 
 import java.io.File;
 
-import static gitlet.Utils.CWD;
-import static gitlet.Utils.GITLET;
+import static gitlet.Utils.cwd;
+import static gitlet.Utils.gitletDir;
 
 /** Contains the logic needed to remove a file from the stage.
  * @author Sam Stahl
@@ -14,15 +14,15 @@ public class RmCommand extends Command {
      *  that only one file gets removed.
      */
     RmCommand(String[] args) {
-        if (!GITLET.exists()) {
+        if (!gitletDir().exists()) {
             System.out.println("Not in an initialized Gitlet directory.");
             setFailed();
         } else if (args.length == 1 || args.length > 2) {
             System.out.println("Incorrect operands.");
             setFailed();
         }
-        _file = Utils.join(CWD, args[1]);
-        _stage = new Stage();
+        _file = Utils.join(cwd(), args[1]);
+        _stage = Repository.current().stage();
         if (!_stage.trackedOrContains(_file)) {
             System.out.println("No reason to remove the file.");
             setFailed();
@@ -1,141 +1,536 @@
 package gitlet;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static gitlet.Utils.*;
 
-/** The object representation of the files in the stage.
+/** The object representation of the files in the stage. The stage is
+ *  kept in a single binary index file listing every file the next commit
+ *  will track, by its path, along with the ID of the blob holding its
+ *  staged contents and the mode, size, modification time and inode the
+ *  file had when it was last hashed. A file is staged for addition if its
+ *  blob differs from the head commit's, and staged for removal if the
+ *  head commit tracks it but the index does not. Every lookup is a single
+ *  hash table access, and a file whose stat data has not changed since it
+ *  was hashed is known to be unchanged without reading it again.
  * @author Sam Stahl
  */
 public class Stage {
 
-    /** The folder that houses the stage. */
-    private static final File STAGE = join(GITLET, "stage");
+    /** The file that holds the index. */
+    static File indexFile() {
+        return join(gitletDir(), "index");
+    }
+
+    /** The folder that housed the stage before the index replaced it. */
+    private static File legacyFolder() {
+        return join(gitletDir(), "stage");
+    }
+
+    /** Identifies an index file. */
+    private static final int MAGIC = 0x47535447;
 
-    /** The folder that houses the added files. */
-    private static final File ADD = join(STAGE, "add");
+    /** The version of the index layout. */
+    private static final int VERSION = 1;
 
-    /** The folder that houses the removed files. */
-    private static final File RM = join(STAGE, "rm");
+    /** The number of files a single task of a scan compares. */
+    private static final int SCAN_BATCH = 256;
 
-    /** Initializes the stage by updating its contents based on the
-     *  files present.
+    /** The stat data recorded for a file whose attributes are unknown. */
+    private static final long UNKNOWN = -1;
+
+    /** Initializes the stage by reading the index. A repository that has
+     *  no index yet gets one listing the files of the head commit, plus
+     *  whatever was staged in the folders that used to hold the stage.
      */
     Stage() {
-        updateContents();
+        if (indexFile().exists()) {
+            read();
+        } else {
+            clear();
+            importLegacy();
+        }
     }
 
-    /** Updates the lists for files to be added and removed based
-     *  on the contents of the add and rm folders inside the stage folder.
+    /** Adds File F to the stage, storing its contents as a blob unless its
+     *  stat data shows it has not changed since it was last hashed.
      */
-    void updateContents() {
-        _add = new ArrayList<>();
-        _remove = new ArrayList<>();
-        File[] toAdd = ADD.listFiles(), toRemove = RM.listFiles();
-        if (toAdd != null) {
-            _add.addAll(Arrays.asList(toAdd));
-        }
-        if (toRemove != null) {
-            _remove.addAll(Arrays.asList(toRemove));
+    void addToStage(File f) {
+        addToStage(List.of(f));
+    }
+
+    /** Adds FILES to the stage as addToStage(File) would add each, but
+     *  writes the index only once.
+     */
+    void addToStage(Collection<File> files) {
+        for (File f : files) {
+            Entry old = _entries.get(f), now = stat(f);
+            if (old != null && old.sameStat(now) && old._mtime < _written) {
+                now._blob = old._blob;
+            } else {
+                now._blob = ObjectStore.writeBlob(f);
+            }
+            _entries.put(f, now);
         }
+        write();
     }
 
-    /** Adds File F to the stage by adding a version
-     *  of it to the add folder within stage, if possible.
+    /** Either unstages F, if it is staged for addition, or slates it for
+     *  removal and removes it from the CWD.
      */
-    void addToStage(File f) {
-        Commit head = getHead();
-        File toStage = join(ADD, f.getName());
-        if (_remove.contains(join(RM, f.getName()))) {
-            _remove.remove(join(RM, f.getName()));
-            join(RM, f.getName()).delete();
-        }
-        if (head.contains(f)) {
-            File fromCommit = head.getVersionOf(f);
-            if (contentsMatch(f, fromCommit)) {
-                remove(f, true);
-                return;
+    void remove(File f) {
+        if (isAdded(f)) {
+            String tracked = head().get(f);
+            if (tracked == null) {
+                _entries.remove(f);
+                FsMonitor.touch(f);
+            } else {
+                _entries.put(f, new Entry(tracked));
             }
+        } else {
+            _entries.remove(f);
+            deleteAndPrune(f);
+        }
+        write();
+    }
+
+    /** Returns true if file F is tracked or
+     * if the stage contains the file.
+     */
+    boolean trackedOrContains(File f) {
+        return isAdded(f) || head().containsKey(f);
+    }
+
+    /** Returns true if F is staged for addition. */
+    boolean isAdded(File f) {
+        Entry e = _entries.get(f);
+        return e != null && !e._blob.equals(head().get(f));
+    }
+
+    /** Returns true if F is staged for removal. */
+    boolean isRemoved(File f) {
+        return !_entries.containsKey(f) && head().containsKey(f);
+    }
+
+    /** Returns true if F is untracked, being neither tracked by the head
+     *  commit nor staged for addition, or being staged for removal.
+     */
+    boolean untracked(File f) {
+        return !f.equals(gitletDir()) && !_entries.containsKey(f);
+    }
+
+    /** Returns the ID of the blob holding the staged contents of F, or
+     *  null if the index does not list F.
+     */
+    String blob(File f) {
+        Entry e = _entries.get(f);
+        return e == null ? null : e._blob;
+    }
+
+    /** Returns the files the index lists. */
+    Set<File> files() {
+        return _entries.keySet();
+    }
+
+    /** Returns true if the index lists F with the blob BLOB and F's stat
+     *  data shows it has not changed since it was hashed.
+     */
+    boolean clean(File f, String blob) {
+        Entry e = _entries.get(f);
+        if (e == null || !blob.equals(e._blob) || e._mtime >= _written) {
+            return false;
         }
         try {
-            toStage.createNewFile();
-        } catch (IOException e) {
-            throw Utils.error(e.getMessage());
+            return e.sameStat(stat(f));
+        } catch (GitletException excp) {
+            return false;
         }
-        String fromF = Utils.readContentsAsString(f);
-        Utils.writeContents(toStage, fromF);
-        updateContents();
     }
 
-    /** Either removes F from the add directory or slates
-     *  it for removal from the CWD. SOFT removals only
-     *  affect the add directory.
+    /** Records that F was just written with the contents of the blob
+     *  BLOB, keeping its stat data. The index is not written.
      */
-    private void remove(File f, boolean soft) {
-        File inAdd = join(ADD, f.getName());
-        if (inAdd.exists()) {
-            inAdd.delete();
-            return;
+    void record(File f, String blob) {
+        Entry e = stat(f);
+        e._blob = blob;
+        _entries.put(f, e);
+    }
+
+    /** Compares the files the index lists with the working directory on
+     *  THREADS threads, returning each one whose contents no longer match
+     *  its staged blob, mapped to "modified" or "deleted". Only files whose
+     *  stat data changed since they were hashed are read; those found
+     *  unchanged get their stat data refreshed, so that they need not be
+     *  read again. If CANDIDATES is not null, only its suspects are
+     *  looked at.
+     */
+    Map<File, String> unstaged(int threads, Set<File> candidates) {
+        File[] files = candidates == null
+            ? _entries.keySet().toArray(new File[0])
+            : suspects(candidates).toArray(new File[0]);
+        _checked = files.length;
+        Map<File, String> changes = new ConcurrentHashMap<>();
+        Map<File, Entry> refreshed = new ConcurrentHashMap<>();
+        _hashed.set(0);
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            pool.invoke(new Scan(files, 0, files.length, changes,
+                    refreshed));
+        } finally {
+            pool.shutdown();
         }
-        if (!soft) {
-            File toStage = join(RM, f.getName());
-            try {
-                toStage.createNewFile();
-            } catch (IOException e) {
-                throw Utils.error(e.getMessage());
-            }
-            if (f.exists()) {
-                String fromF = Utils.readContentsAsString(f);
-                Utils.writeContents(toStage, fromF);
-                f.delete();
-            }
+        if (!refreshed.isEmpty()) {
+            _entries.putAll(refreshed);
+            write();
         }
-        updateContents();
+        return changes;
     }
 
-    /** Shortcut to do hard removals of file F. */
-    void remove(File f) {
-        remove(f, false);
+    /** Returns the files the index lists that may have changed since
+     *  they were hashed, given that only the files and folders in
+     *  CANDIDATES were touched: the files in CANDIDATES or under a folder
+     *  in it, and those whose stat data is not known or cannot be trusted.
+     *  Every other file is known to be unchanged without a look.
+     */
+    List<File> suspects(Set<File> candidates) {
+        List<File> suspects = new ArrayList<>();
+        for (Map.Entry<File, Entry> e : _entries.entrySet()) {
+            long mtime = e.getValue()._mtime;
+            if (mtime == UNKNOWN || mtime >= _written
+                || !candidates.isEmpty() && touched(e.getKey(), candidates)) {
+                suspects.add(e.getKey());
+            }
+        }
+        return suspects;
     }
 
+    /** Returns true if F, or a folder above it in the working directory,
+     *  is in CANDIDATES.
+     */
+    private static boolean touched(File f, Set<File> candidates) {
+        for (; f != null && !f.equals(cwd()); f = f.getParentFile()) {
+            if (candidates.contains(f)) {
+                return true;
+            }
+        }
+        return false;
+    }
 
-    /** Returns true if file F is tracked or
-     * if the stage contains the file.
+    /** Returns the number of files looked at by the last call to
+     *  unstaged.
      */
-    boolean trackedOrContains(File f) {
-        File inStage = join(ADD, f.getName());
-        return (_add.contains(inStage) || getHead().contains(f));
+    int checked() {
+        return _checked;
+    }
+
+    /** Returns the number of files read by the last call to unstaged. */
+    int hashed() {
+        return _hashed.get();
     }
 
     /** Returns all added files. */
     List<File> getAddedFiles() {
-        return _add;
+        List<File> added = new ArrayList<>();
+        for (File f : _entries.keySet()) {
+            if (isAdded(f)) {
+                added.add(f);
+            }
+        }
+        return added;
     }
 
     /** Returns all files slated for removal. */
     List<File> getRemovedFiles() {
-        return _remove;
+        List<File> removed = new ArrayList<>();
+        for (File f : head().keySet()) {
+            if (!_entries.containsKey(f)) {
+                removed.add(f);
+            }
+        }
+        return removed;
     }
 
-    /** Clear's the stage's persistence. */
+    /** Clears the stage, making the index list exactly the files of the
+     *  head commit. The stat data of files whose blob is unchanged is
+     *  kept.
+     */
     void clear() {
-        for (File f : _add) {
-            f.delete();
+        Map<File, Entry> old = _entries;
+        _entries = new HashMap<>();
+        for (Map.Entry<File, String> e : head().entrySet()) {
+            Entry prev = old.get(e.getKey());
+            _entries.put(e.getKey(),
+                    prev != null && prev._blob.equals(e.getValue())
+                    ? prev : new Entry(e.getValue()));
         }
-        for (File f : _remove) {
-            f.delete();
+        write();
+    }
+
+    /** Returns the files tracked by the head commit and their blobs. */
+    private Map<File, String> head() {
+        return getHead().getContents();
+    }
+
+    /** Reads the entries of the index. */
+    private void read() {
+        Repository.noteRead();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Files.newInputStream(indexFile().toPath())))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw error("Corrupt index.");
+            }
+            _written = Files.getLastModifiedTime(indexFile().toPath())
+                .to(TimeUnit.NANOSECONDS);
+            byte[] id = new byte[ID_LENGTH / 2];
+            for (int n = in.readInt(); n > 0; n -= 1) {
+                String path = in.readUTF();
+                in.readFully(id);
+                Entry e = new Entry(ObjectId.read(id, 0).hex());
+                e._mode = in.readInt();
+                e._size = in.readLong();
+                e._mtime = in.readLong();
+                e._inode = in.readLong();
+                _entries.put(join(cwd(), path), e);
+            }
+        } catch (IOException e) {
+            throw error(e.getMessage());
+        }
+    }
+
+    /** Writes the entries to the index, sorted by path, replacing the
+     *  old index only once the new one is complete.
+     */
+    private void write() {
+        Map<String, Entry> sorted = new TreeMap<>();
+        for (Map.Entry<File, Entry> e : _entries.entrySet()) {
+            sorted.put(relativePath(e.getKey()), e.getValue());
+        }
+        File tmp = join(gitletDir(), "index.tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(
+                        tmp.toPath())))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(sorted.size());
+            for (Map.Entry<String, Entry> e : sorted.entrySet()) {
+                Entry entry = e.getValue();
+                out.writeUTF(e.getKey());
+                out.write(ObjectId.fromHex(entry._blob).bytes());
+                out.writeInt(entry._mode);
+                out.writeLong(entry._size);
+                out.writeLong(entry._mtime);
+                out.writeLong(entry._inode);
+            }
+        } catch (IOException e) {
+            throw error(e.getMessage());
+        }
+        try {
+            Files.move(tmp.toPath(), indexFile().toPath(),
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            Repository.current().stamp(indexFile());
+            _written = Files.getLastModifiedTime(indexFile().toPath())
+                .to(TimeUnit.NANOSECONDS);
+        } catch (IOException e) {
+            throw error(e.getMessage());
+        }
+    }
+
+    /** Stages whatever was staged in the folders that held the stage
+     *  before the index, then deletes those folders.
+     */
+    private void importLegacy() {
+        File add = join(legacyFolder(), "add"), rm = join(legacyFolder(), "rm");
+        if (!legacyFolder().exists()) {
+            return;
+        }
+        List<String> added = plainFilenamesIn(add),
+            removed = plainFilenamesIn(rm);
+        if (added != null) {
+            for (String name : added) {
+                Entry e = new Entry(ObjectStore.writeBlob(join(add, name)));
+                _entries.put(join(cwd(), name), e);
+                join(add, name).delete();
+            }
+        }
+        if (removed != null) {
+            for (String name : removed) {
+                _entries.remove(join(cwd(), name));
+                join(rm, name).delete();
+            }
+        }
+        add.delete();
+        rm.delete();
+        legacyFolder().delete();
+        write();
+    }
+
+    /** Returns an entry holding the current stat data of file F, with no
+     *  blob yet.
+     */
+    private static Entry stat(File f) {
+        Path p = f.toPath();
+        Entry e = new Entry(null);
+        try {
+            try {
+                Map<String, Object> a = Files.readAttributes(p,
+                        "unix:mode,size,lastModifiedTime,ino");
+                e._mode = (Integer) a.get("mode");
+                e._size = (Long) a.get("size");
+                e._mtime = ((FileTime) a.get("lastModifiedTime"))
+                    .to(TimeUnit.NANOSECONDS);
+                e._inode = (Long) a.get("ino");
+            } catch (UnsupportedOperationException
+                     | IllegalArgumentException excp) {
+                BasicFileAttributes a =
+                    Files.readAttributes(p, BasicFileAttributes.class);
+                e._mode = 0;
+                e._size = a.size();
+                e._mtime = a.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+                e._inode = 0;
+            }
+        } catch (IOException excp) {
+            throw error(excp.getMessage());
+        }
+        return e;
+    }
+
+    /** Compares a range of the files listed in the index with the working
+     *  directory, splitting it among threads while it is large.
+     */
+    private class Scan extends RecursiveAction {
+
+        /** Compares FILES[LO .. HI-1], recording each that differs in
+         *  CHANGES and the fresh stat data of each found unchanged despite
+         *  its stat data in REFRESHED.
+         */
+        Scan(File[] files, int lo, int hi, Map<File, String> changes,
+             Map<File, Entry> refreshed) {
+            _files = files;
+            _lo = lo;
+            _hi = hi;
+            _changes = changes;
+            _refreshed = refreshed;
+        }
+
+        @Override
+        protected void compute() {
+            if (_hi - _lo > SCAN_BATCH) {
+                int mid = (_lo + _hi) >>> 1;
+                invokeAll(new Scan(_files, _lo, mid, _changes, _refreshed),
+                          new Scan(_files, mid, _hi, _changes, _refreshed));
+                return;
+            }
+            for (int i = _lo; i < _hi; i += 1) {
+                File f = _files[i];
+                Entry e = _entries.get(f), now;
+                try {
+                    now = stat(f);
+                } catch (GitletException excp) {
+                    _changes.put(f, "deleted");
+                    continue;
+                }
+                if (e.sameStat(now) && e._mtime < _written) {
+                    continue;
+                }
+                _hashed.incrementAndGet();
+                if (ObjectStore.hash(f).equals(e._blob)) {
+                    now._blob = e._blob;
+                    _refreshed.put(f, now);
+                } else {
+                    _changes.put(f, "modified");
+                }
+            }
+        }
+
+        /** The files being compared. */
+        private final File[] _files;
+
+        /** The first of the files this task compares. */
+        private final int _lo;
+
+        /** The index just past the last file this task compares. */
+        private final int _hi;
+
+        /** The files found to differ, with how. */
+        private final Map<File, String> _changes;
+
+        /** The fresh stat data of files found unchanged. */
+        private final Map<File, Entry> _refreshed;
+
+    }
+
+    /** A file listed in the index. */
+    private static class Entry {
+
+        /** An entry for the blob BLOB, whose file's stat data is not
+         *  known.
+         */
+        Entry(String blob) {
+            _blob = blob;
+        }
+
+        /** Returns true if OTHER has the same stat data as this entry,
+         *  which must be known.
+         */
+        boolean sameStat(Entry other) {
+            return _mtime != UNKNOWN && _mode == other._mode
+                && _size == other._size && _mtime == other._mtime
+                && _inode == other._inode;
         }
-        updateContents();
+
+        /** The ID of the blob holding the staged contents. */
+        private String _blob;
+
+        /** The mode of the file. */
+        private int _mode;
+
+        /** The length of the file in bytes. */
+        private long _size = UNKNOWN;
+
+        /** The modification time of the file in nanoseconds. */
+        private long _mtime = UNKNOWN;
+
+        /** The inode number of the file. */
+        private long _inode = UNKNOWN;
+
     }
 
-    /** List of files to be added. */
-    private List<File> _add;
+    /** The entries of the index, by file. */
+    private Map<File, Entry> _entries = new HashMap<>();
+
+    /** The modification time of the index, in nanoseconds. A file
+     *  modified no earlier than this may have changed after it was hashed
+     *  without its stat data showing it.
+     */
+    private long _written = Long.MIN_VALUE;
+
+    /** The number of files looked at by the last scan. */
+    private int _checked;
 
-    /** List of files to be removed. */
-    private List<File> _remove;
+    /** The number of files read by the last scan. */
+    private final AtomicInteger _hashed = new AtomicInteger();
 
 }
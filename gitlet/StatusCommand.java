@@ -2,9 +2,12 @@ package gitlet;
 
 import java.io.File;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import static gitlet.Utils.*;
 
@@ -17,7 +20,7 @@ public class StatusCommand extends Command {
      *  one argument.
      */
     StatusCommand(String[] args) {
-        if (!GITLET.exists()) {
+        if (!gitletDir().exists()) {
             System.out.println("Not in an initialized Gitlet directory.");
             setFailed();
         } else if (args.length != 1) {
@@ -29,7 +32,7 @@ public class StatusCommand extends Command {
     /** Displays the branches in the repository. */
     private void displayBranches() {
         System.out.println("=== Branches ===");
-        File[] heads = join(GITLET, "branches").listFiles();
+        File[] heads = join(gitletDir(), "branches").listFiles();
         System.out.println("*" + getHeadBranch());
         List<String> sortedNames = new ArrayList<>();
         if (heads != null) {
@@ -55,10 +58,10 @@ public class StatusCommand extends Command {
     /** Display the staged files in the repository. */
     private void displayStaged() {
         System.out.println("=== Staged Files ===");
-        Stage s = new Stage();
+        Stage s = Repository.current().stage();
         List<String> sortedNames = new ArrayList<>();
         for (File f : s.getAddedFiles()) {
-            sortedNames.add(f.getName());
+            sortedNames.add(relativePath(f));
         }
         sortedNames.sort(new Comparator<String>() {
             @Override
@@ -75,10 +78,10 @@ public class StatusCommand extends Command {
     /** Displays the removed files from the repository. */
     private void displayRemoved() {
         System.out.println("=== Removed Files ===");
-        Stage s = new Stage();
+        Stage s = Repository.current().stage();
         List<String> sortedNames = new ArrayList<>();
         for (File f : s.getRemovedFiles()) {
-            sortedNames.add(f.getName());
+            sortedNames.add(relativePath(f));
         }
         sortedNames.sort(new Comparator<String>() {
             @Override
@@ -92,45 +95,67 @@ public class StatusCommand extends Command {
         System.out.println();
     }
 
-    /** Displays the modified yet not staged files in the repo. */
-    private void displayModNotStaged() {
-        Commit head = getHead();
-        Stage s = new Stage();
-        List<File> cwdFiles = Arrays.asList(CWD.listFiles());
-        for (File f : head.getContents().keySet()) {
-            if (!s.getRemovedFiles().contains(f)
-                    && !cwdFiles.contains(f)) {
-                System.out.println(f.getName());
-            }
-            if (!cwdFiles.contains(f)
-                    && !contentsMatch(f, head.getVersionOf(f))) {
-                System.out.println(f.getName());
-            }
+    /** Displays the files whose contents in the working directory differ
+     *  from those staged or tracked, which are CHANGES.
+     */
+    private void displayModNotStaged(Map<File, String> changes) {
+        System.out.println("=== Modifications Not Staged For Commit ===");
+        List<String> sortedNames = new ArrayList<>();
+        for (Map.Entry<File, String> e : changes.entrySet()) {
+            sortedNames.add(relativePath(e.getKey()) + " ("
+                            + e.getValue() + ")");
+        }
+        Collections.sort(sortedNames);
+        for (String str : sortedNames) {
+            System.out.println(str);
         }
         System.out.println();
     }
 
-    /** Displays the untracked files in the repo. */
-    private void displayUntracked() {
-        File[] cwdFiles = CWD.listFiles();
-        for (File f : cwdFiles) {
-            if (untracked(f)) {
-                System.out.println(f.getName());
+    /** Displays the UNTRACKED files in the repo. */
+    private void displayUntracked(List<File> untracked) {
+        System.out.println("=== Untracked Files ===");
+        List<String> sortedNames = new ArrayList<>();
+        for (File f : untracked) {
+            if (f.isFile()) {
+                sortedNames.add(relativePath(f));
             }
         }
+        Collections.sort(sortedNames);
+        for (String str : sortedNames) {
+            System.out.println(str);
+        }
         System.out.println();
     }
 
     @Override
     void execute() {
         if (!failed()) {
+            long start = System.nanoTime();
+            int threads = threads();
+            Repository repo = Repository.current();
+            FsMonitor.Changes monitor = repo.monitor();
+            Map<File, String> changes = repo.stage().unstaged(threads,
+                    monitor == null ? null : monitor.files());
+            List<File> untracked = repo.untracked();
             displayBranches();
             displayStaged();
             displayRemoved();
-            System.out.println("=== Modifications Not Staged For Commit ===");
-            System.out.println();
-            System.out.println("=== Untracked Files ===");
-            System.out.println();
+            displayModNotStaged(changes);
+            displayUntracked(untracked);
+            if (monitor != null) {
+                Set<File> again = new HashSet<>(changes.keySet());
+                again.addAll(untracked);
+                monitor.save(again);
+            }
+            if (System.getProperty("gitlet.stats") != null) {
+                System.err.printf("status: %d files checked, %d hashed, "
+                        + "%d threads, fsmonitor %s, %.1f ms%n",
+                        repo.stage().checked(), repo.stage().hashed(),
+                        threads, monitor == null ? "off"
+                        : monitor.files() == null ? "full scan" : "on",
+                        (System.nanoTime() - start) / 1e6);
+            }
         }
     }
 
@@ -0,0 +1,229 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import static gitlet.Utils.*;
+
+/** A content-addressed directory listing. Each tree maps the names of the
+ *  files directly inside it to their blob IDs and the names of its
+ *  subdirectories to the IDs of their trees, so a commit only needs to
+ *  store the ID of its root tree. A tree that does not change between
+ *  commits is stored once and shared by all of them. Trees are stored in
+ *  a binary format of their own, so that their IDs do not depend on the
+ *  shape of this class; trees stored by Java serialization, as they used
+ *  to be, are still read.
+ * @author Sam Stahl
+ */
+class Tree implements Serializable {
+
+    /** Returns the tree with the given ID. */
+    static Tree read(String id) {
+        byte[] bytes = ObjectStore.load(ObjectStore.TREE, id);
+        if (bytes == null) {
+            throw error("Missing tree %s.", id);
+        }
+        return decode(bytes);
+    }
+
+    /** Returns the ID of this tree, storing it first if no identical tree
+     *  has been stored yet.
+     */
+    String write() {
+        return ObjectStore.write(ObjectStore.TREE, encode());
+    }
+
+    /** Returns this tree in the binary format: the MAGIC byte and the
+     *  VERSION; the number of files in it and all its subtrees; and the
+     *  number of its files, then of its subtrees, as varints, each followed
+     *  by their entries, which are a name and a 20-byte ID, in order of
+     *  name. A name is its length in UTF-8 bytes as a varint followed by
+     *  those bytes.
+     */
+    byte[] encode() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(MAGIC);
+        out.write(VERSION);
+        Delta.writeVarint(out, _count);
+        for (TreeMap<String, String> entries : List.of(_blobs, _trees)) {
+            Delta.writeVarint(out, entries.size());
+            for (Map.Entry<String, String> e : entries.entrySet()) {
+                Delta.writeString(out, e.getKey());
+                out.writeBytes(ObjectId.fromHex(e.getValue()).bytes());
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /** Returns the tree stored as BYTES, either in the binary format or
+     *  by Java serialization, whatever the version of this class that
+     *  serialized it.
+     */
+    static Tree decode(byte[] bytes) {
+        if (bytes.length == 0 || bytes[0] != MAGIC) {
+            return deserializeAnyVersion(bytes, Tree.class);
+        } else if (bytes[1] != VERSION) {
+            throw error("Unknown tree format %d.", bytes[1]);
+        }
+        Tree tree = new Tree();
+        int[] pos = {2};
+        tree._count = (int) Delta.readVarint(bytes, pos);
+        for (TreeMap<String, String> entries
+                 : List.of(tree._blobs, tree._trees)) {
+            for (int n = (int) Delta.readVarint(bytes, pos); n > 0; n -= 1) {
+                String name = Delta.readString(bytes, pos);
+                entries.put(name, ObjectId.read(bytes, pos[0]).hex());
+                pos[0] += ObjectId.BYTES;
+            }
+        }
+        return tree;
+    }
+
+    /** Records in NAMES the name under which each blob and subtree of
+     *  this tree is stored, keyed by its ID.
+     */
+    void names(Map<String, String> names) {
+        for (Map.Entry<String, String> e : _blobs.entrySet()) {
+            names.put(e.getValue(), e.getKey());
+        }
+        for (Map.Entry<String, String> e : _trees.entrySet()) {
+            names.put(e.getValue(), e.getKey());
+        }
+    }
+
+    /** Returns the number of files in this tree and all its subtrees. */
+    int count() {
+        return _count;
+    }
+
+    /** Returns a copy of this tree with CHANGES applied, where CHANGES
+     *  maps repository-relative paths to new blob IDs, or to null for
+     *  removed files. Only the subtrees on the changed paths are read and
+     *  rewritten; every other subtree is shared with this tree.
+     */
+    Tree apply(Map<String, String> changes) {
+        Tree result = new Tree();
+        result._blobs.putAll(_blobs);
+        result._trees.putAll(_trees);
+        result._count = _count;
+        Map<String, Map<String, String>> nested = new TreeMap<>();
+        for (Map.Entry<String, String> e : changes.entrySet()) {
+            String path = e.getKey();
+            int slash = path.indexOf('/');
+            if (slash < 0) {
+                String old = e.getValue() == null
+                        ? result._blobs.remove(path)
+                        : result._blobs.put(path, e.getValue());
+                if (old == null && e.getValue() != null) {
+                    result._count += 1;
+                } else if (old != null && e.getValue() == null) {
+                    result._count -= 1;
+                }
+            } else {
+                String dir = path.substring(0, slash);
+                if (!nested.containsKey(dir)) {
+                    nested.put(dir, new TreeMap<>());
+                }
+                nested.get(dir).put(path.substring(slash + 1), e.getValue());
+            }
+        }
+        for (Map.Entry<String, Map<String, String>> e : nested.entrySet()) {
+            String old = _trees.get(e.getKey());
+            Tree oldSub = old == null ? new Tree() : read(old),
+                sub = oldSub.apply(e.getValue());
+            result._count += sub._count - oldSub._count;
+            if (sub._count == 0) {
+                result._trees.remove(e.getKey());
+            } else {
+                result._trees.put(e.getKey(), sub.write());
+            }
+        }
+        return result;
+    }
+
+    /** Returns every file in the tree with ID ROOT, as a map from
+     *  repository-relative paths to blob IDs.
+     */
+    static Map<String, String> files(String root) {
+        Map<String, String> out = new HashMap<>();
+        read(root).files("", out);
+        return out;
+    }
+
+    /** Adds every file of this tree to OUT, prefixing its path
+     *  with PREFIX.
+     */
+    private void files(String prefix, Map<String, String> out) {
+        for (Map.Entry<String, String> e : _blobs.entrySet()) {
+            out.put(prefix + e.getKey(), e.getValue());
+        }
+        for (Map.Entry<String, String> e : _trees.entrySet()) {
+            read(e.getValue()).files(prefix + e.getKey() + "/", out);
+        }
+    }
+
+    /** Adds to OUT the repository-relative path of every file whose blob
+     *  differs between the trees with IDs A and B, including files
+     *  present in only one of them. Subtrees with equal IDs are skipped
+     *  without being read.
+     */
+    static void diff(String a, String b, Collection<String> out) {
+        diff(a, b, "", out);
+    }
+
+    /** Adds to OUT the paths that differ between trees A and B, where
+     *  either may be null for an empty tree, prefixed by PREFIX.
+     */
+    private static void diff(String a, String b, String prefix,
+                             Collection<String> out) {
+        if (a != null && a.equals(b)) {
+            return;
+        }
+        Tree x = a == null ? new Tree() : read(a),
+            y = b == null ? new Tree() : read(b);
+        TreeSet<String> names = new TreeSet<>(x._blobs.keySet());
+        names.addAll(y._blobs.keySet());
+        for (String name : names) {
+            String blobA = x._blobs.get(name), blobB = y._blobs.get(name);
+            if (blobA == null || !blobA.equals(blobB)) {
+                out.add(prefix + name);
+            }
+        }
+        names = new TreeSet<>(x._trees.keySet());
+        names.addAll(y._trees.keySet());
+        for (String name : names) {
+            diff(x._trees.get(name), y._trees.get(name),
+                    prefix + name + "/", out);
+        }
+    }
+
+    /** The first byte of a tree in the binary format, which no Java
+     *  serialization stream starts with.
+     */
+    private static final byte MAGIC = 'T';
+
+    /** The version of the binary format. */
+    private static final byte VERSION = 1;
+
+    /** The version of the Java serialization trees used to be stored
+     *  with. Trees serialized by other versions of this class, whose
+     *  fields were the same, are read too.
+     */
+    private static final long serialVersionUID = -5064800823078018502L;
+
+    /** The blob IDs of the files directly in this tree, by name. */
+    private TreeMap<String, String> _blobs = new TreeMap<>();
+
+    /** The tree IDs of the subdirectories of this tree, by name. */
+    private TreeMap<String, String> _trees = new TreeMap<>();
+
+    /** The number of files in this tree and all its subtrees. */
+    private int _count;
+
+}
@@ -0,0 +1,118 @@
+package gitlet;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static gitlet.Utils.*;
+
+/** A planned update of the working directory from the files listed in
+ *  the index to those of a target commit. The plan is made by comparing
+ *  blob IDs, so only files whose contents differ are written and only
+ *  files the target does not track are deleted. A file whose blob is the
+ *  same on both sides is rewritten only if its stat data shows it was
+ *  changed or removed since it was hashed, so that the working directory
+ *  still ends up holding exactly the target's files. The paths compared
+ *  are found by comparing the trees of the head and target commits, so a
+ *  folder whose subtree they share is skipped without being read.
+ * @author Sam Stahl
+ */
+public class TreeUpdate {
+
+    /** Plans the update of the working directory from the files listed in
+     *  STAGE, which differ from those of the head commit FROM only where
+     *  they are staged, to the files and blobs of the commit TARGET. The
+     *  paths compared are those that differ between the trees of FROM and
+     *  TARGET, those staged, and those that may have changed on disk: the
+     *  suspects of CANDIDATES, or every file the index lists if CANDIDATES
+     *  is null.
+     */
+    TreeUpdate(Stage stage, Commit from, Commit target,
+               Set<File> candidates) {
+        _stage = stage;
+        List<String> changed = new ArrayList<>();
+        Tree.diff(from.treeID(), target.treeID(), changed);
+        Set<File> paths = new HashSet<>();
+        for (String path : changed) {
+            paths.add(join(cwd(), path));
+        }
+        paths.addAll(stage.getAddedFiles());
+        paths.addAll(stage.getRemovedFiles());
+        paths.addAll(candidates == null ? stage.files()
+                     : stage.suspects(candidates));
+        Map<File, String> files = target.getContents();
+        for (File f : paths) {
+            String blob = files.get(f);
+            if (blob == null) {
+                if (stage.blob(f) != null) {
+                    _deletes.add(f);
+                }
+            } else if (!stage.clean(f, blob)) {
+                _writes.put(f, blob);
+            }
+        }
+        _compared = paths.size();
+    }
+
+    /** Plans the deletion of file F too, which the index need not list.
+     */
+    void delete(File f) {
+        _deletes.add(f);
+    }
+
+    /** Deletes and writes the planned files, recording the stat data of
+     *  every file written in the stage. Folders left empty are deleted
+     *  and missing ones made, deleting first so that a file may replace a
+     *  folder or a folder a file.
+     */
+    void apply() {
+        for (File f : _deletes) {
+            if (deleteAndPrune(f)) {
+                _deleted += 1;
+            }
+        }
+        for (Map.Entry<File, String> e : _writes.entrySet()) {
+            ObjectStore.copyTo(e.getValue(), e.getKey());
+            _stage.record(e.getKey(), e.getValue());
+            _written += 1;
+        }
+    }
+
+    /** Returns the number of paths compared. */
+    public int compared() {
+        return _compared;
+    }
+
+    /** Returns the number of files written. */
+    public int written() {
+        return _written;
+    }
+
+    /** Returns the number of files deleted. */
+    public int deleted() {
+        return _deleted;
+    }
+
+    /** The stage listing the files in the working directory. */
+    private final Stage _stage;
+
+    /** The blob to write to each file that must change. */
+    private final Map<File, String> _writes = new HashMap<>();
+
+    /** The files to delete. */
+    private final List<File> _deletes = new ArrayList<>();
+
+    /** The number of paths compared. */
+    private int _compared;
+
+    /** The number of files written. */
+    private int _written;
+
+    /** The number of files deleted. */
+    private int _deleted;
+
+}
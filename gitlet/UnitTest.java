@@ -1,5 +1,12 @@
 package gitlet;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
 import ucb.junit.textui;
 import org.junit.Test;
 import static org.junit.Assert.*;
@@ -20,6 +27,314 @@ public class UnitTest {
     public void placeholderTest() {
     }
 
-}
+    /** Hex digits of an ID whose bytes are all zero. */
+    private static final String ZEROS =
+        "0000000000000000000000000000000000000000";
+
+    /** Hex digits of an ID whose bytes are all 0xff. */
+    private static final String ONES =
+        "ffffffffffffffffffffffffffffffffffffffff";
+
+    /** Returns an ID whose first word is W0, so that every ID made with
+     *  the same W0 falls in the same slot of an ObjectIdMap, and whose
+     *  other words are made from N.
+     */
+    private static ObjectId collidingId(long w0, int n) {
+        return new ObjectId(w0, n * 0x9e3779b97f4a7c15L, ~n);
+    }
+
+    @Test
+    public void objectIdHexRoundTrip() {
+        String hex = "0123456789abcdef0123456789abcdeffedcba98";
+        assertEquals(hex, ObjectId.fromHex(hex).hex());
+        assertEquals(ZEROS, ObjectId.fromHex(ZEROS).hex());
+        assertEquals(ONES, ObjectId.fromHex(ONES).hex());
+        assertEquals(0x0123456789abcdefL, ObjectId.fromHex(hex).word0());
+        assertEquals(0xfedcba98, ObjectId.fromHex(hex).word2());
+    }
+
+    @Test
+    public void objectIdBytesRoundTrip() {
+        ObjectId id =
+            ObjectId.fromHex("8d2792dd9c16fcc6c3c62d40a0adccc14895bbcd");
+        byte[] bytes = new byte[ObjectId.BYTES + 3];
+        id.write(bytes, 3);
+        assertEquals((byte) 0x8d, bytes[3]);
+        assertEquals((byte) 0xcd, bytes[bytes.length - 1]);
+        assertEquals(id, ObjectId.read(bytes, 3));
+    }
+
+    @Test
+    public void objectIdEqualityAndOrder() {
+        ObjectId a = ObjectId.fromHex(ZEROS), b = ObjectId.fromHex(ONES);
+        assertEquals(a, ObjectId.fromHex(ZEROS));
+        assertEquals(a.hashCode(), ObjectId.fromHex(ZEROS).hashCode());
+        assertNotEquals(a, b);
+        assertNotEquals(a, ZEROS);
+        assertTrue(a.compareTo(b) < 0);
+        assertTrue(b.compareTo(a) > 0);
+        assertEquals(0, b.compareTo(ObjectId.fromHex(ONES)));
+        assertTrue(collidingId(7, 1).compareTo(collidingId(7, 2)) != 0);
+    }
 
+    @Test(expected = GitletException.class)
+    public void objectIdRejectsShortHex() {
+        ObjectId.fromHex("abc");
+    }
+
+    @Test
+    public void objectIdMapMissingKeys() {
+        ObjectIdMap map = new ObjectIdMap();
+        assertEquals(ObjectIdMap.MISSING, map.get(ObjectId.fromHex(ZEROS)));
+        assertEquals(ObjectIdMap.MISSING, map.get(ONES));
+        assertFalse(map.containsKey(ObjectId.fromHex(ZEROS)));
+        map.put(collidingId(5, 1), 10);
+        assertEquals(ObjectIdMap.MISSING, map.get(collidingId(5, 2)));
+        assertEquals(ObjectIdMap.MISSING, map.get(collidingId(6, 1)));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    public void objectIdMapPutReplaces() {
+        ObjectIdMap map = new ObjectIdMap();
+        ObjectId id = ObjectId.fromHex(ONES);
+        assertEquals(ObjectIdMap.MISSING, map.put(id, 0));
+        assertEquals(0, map.put(id, 42));
+        assertEquals(42, map.get(ONES));
+        assertEquals(1, map.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void objectIdMapRejectsNegativeValues() {
+        new ObjectIdMap().put(ObjectId.fromHex(ZEROS), -2);
+    }
+
+    @Test
+    public void objectIdMapCollisions() {
+        ObjectIdMap map = new ObjectIdMap();
+        for (int n = 0; n < 7; n += 1) {
+            map.put(collidingId(3L << 32, n), n);
+        }
+        map.put(collidingId(4L << 32, 0), 100);
+        for (int n = 0; n < 7; n += 1) {
+            assertEquals(n, map.get(collidingId(3L << 32, n)));
+        }
+        assertEquals(100, map.get(collidingId(4L << 32, 0)));
+        assertEquals(ObjectIdMap.MISSING,
+                     map.get(collidingId(3L << 32, 7)));
+        assertEquals(8, map.size());
+    }
+
+    @Test
+    public void objectIdMapResizes() {
+        ObjectIdMap map = new ObjectIdMap(), sized = new ObjectIdMap(1000);
+        for (int n = 0; n < 1000; n += 1) {
+            map.put(collidingId((long) n << 40 | n % 3, n), n);
+            sized.put(collidingId(n % 5, n), 2 * n);
+        }
+        assertEquals(1000, map.size());
+        assertEquals(1000, sized.size());
+        for (int n = 0; n < 1000; n += 1) {
+            assertEquals(n, map.get(collidingId((long) n << 40 | n % 3, n)));
+            assertEquals(2 * n, sized.get(collidingId(n % 5, n)));
+        }
+        assertEquals(ObjectIdMap.MISSING,
+                     map.get(collidingId(1000L << 40, 1000)));
+    }
+
+    @Test
+    public void objectIdMapPutFromBuffer() {
+        ByteBuffer buf = ByteBuffer.allocate(2 * ObjectId.BYTES);
+        byte[] bytes = new byte[ObjectId.BYTES];
+        ObjectId id = collidingId(9, 9);
+        id.write(bytes, 0);
+        buf.position(ObjectId.BYTES);
+        buf.put(bytes);
+        ObjectIdMap map = new ObjectIdMap();
+        assertEquals(ObjectIdMap.MISSING,
+                     map.put(buf, ObjectId.BYTES, 3));
+        assertEquals(3, map.get(id));
+    }
+
+    @Test
+    public void objectIdSetAddAndContains() {
+        ObjectIdSet set = new ObjectIdSet();
+        assertTrue(set.isEmpty());
+        assertFalse(set.contains(ZEROS));
+        assertTrue(set.add(ZEROS));
+        assertFalse(set.add(ObjectId.fromHex(ZEROS)));
+        assertTrue(set.contains(ZEROS));
+        assertFalse(set.contains(ONES));
+        for (int n = 0; n < 100; n += 1) {
+            assertTrue(set.add(collidingId(0, n)));
+        }
+        assertEquals(101, set.size());
+        assertTrue(set.contains(collidingId(0, 99)));
+        assertFalse(set.contains(collidingId(0, 100)));
+        assertFalse(set.isEmpty());
+    }
 
+    /** The working directory of the PathTables tested. */
+    private static final File ROOT = new File("/repo");
+
+    /** Returns the blob ID whose hex digits all are DIGIT. */
+    private static String blobOf(char digit) {
+        return String.valueOf(digit).repeat(2 * ObjectId.BYTES);
+    }
+
+    /** Returns the files of a commit holding PATHS, in sorted order, each
+     *  with the blob of its index in PATHS.
+     */
+    private static Map<String, String> filesOf(String... paths) {
+        Map<String, String> files = new TreeMap<>();
+        for (int i = 0; i < paths.length; i += 1) {
+            files.put(paths[i], blobOf(Character.forDigit(i, 16)));
+        }
+        return files;
+    }
+
+    @Test
+    public void pathTableLookup() {
+        PathTable table = new PathTable(ROOT,
+                filesOf("a.txt", "dir/b.txt", "dir/sub/c.txt"),
+                new HashMap<>());
+        assertEquals(3, table.size());
+        assertEquals(blobOf('0'), table.get(new File(ROOT, "a.txt")));
+        assertEquals(blobOf('1'), table.get(new File(ROOT, "dir/b.txt")));
+        assertEquals(blobOf('2'),
+                     table.get(new File(new File(ROOT, "dir"), "sub/c.txt")));
+        assertTrue(table.containsKey(new File(ROOT, "dir/sub/c.txt")));
+    }
+
+    @Test
+    public void pathTableMissingPaths() {
+        PathTable table = new PathTable(ROOT,
+                filesOf("a.txt", "dir/b.txt"), new HashMap<>());
+        assertNull(table.get(new File(ROOT, "b.txt")));
+        assertNull(table.get(new File(ROOT, "dir")));
+        assertNull(table.get(new File(ROOT, "dir/b.txt/c")));
+        assertNull(table.get(new File(ROOT, "A.txt")));
+        assertNull(table.get(new File("/other/a.txt")));
+        assertNull(table.get(new File("a.txt")));
+        assertNull(table.get("a.txt"));
+        assertNull(table.get(null));
+        assertFalse(table.containsKey(new File("/repo2/a.txt")));
+        PathTable empty = new PathTable(ROOT, filesOf(), new HashMap<>());
+        assertEquals(0, empty.size());
+        assertNull(empty.get(new File(ROOT, "a.txt")));
+    }
+
+    @Test
+    public void pathTableInterning() {
+        Map<String, String> paths = new HashMap<>();
+        PathTable first = new PathTable(ROOT,
+                filesOf("a.txt", "dir/b.txt"), paths);
+        PathTable second = new PathTable(ROOT,
+                filesOf(new String("a.txt"), "dir/c.txt",
+                        new String("dir/b.txt")), paths);
+        assertEquals(3, paths.size());
+        assertSame(first.path(0), second.path(0));
+        assertSame(first.path(1), second.path(1));
+        assertEquals("dir/c.txt", second.path(2));
+        assertSame(paths.get("dir/c.txt"), second.path(2));
+    }
+
+    @Test
+    public void pathTableOrder() {
+        PathTable table = new PathTable(ROOT,
+                filesOf("b", "a/z", "a.txt", "a", "c/d/e"), new HashMap<>());
+        String[] sorted = {"a", "a.txt", "a/z", "b", "c/d/e"};
+        int i = 0;
+        for (Map.Entry<File, String> e : table.entrySet()) {
+            assertEquals(sorted[i], table.path(i));
+            assertEquals(new File(ROOT, sorted[i]), e.getKey());
+            assertEquals(table.blob(i), e.getValue());
+            i += 1;
+        }
+        assertEquals(sorted.length, i);
+        assertEquals(blobOf('0'), table.get(new File(ROOT, "b")));
+        assertEquals(blobOf('4'), table.get(new File(ROOT, "c/d/e")));
+    }
+
+    @Test
+    public void pathTableManyFiles() {
+        Map<String, String> files = new TreeMap<>();
+        for (int i = 0; i < 500; i += 1) {
+            files.put("dir" + i % 7 + "/f" + i, blobOf('a'));
+        }
+        PathTable table = new PathTable(ROOT, files, new HashMap<>());
+        assertEquals(500, table.size());
+        for (String path : files.keySet()) {
+            assertEquals(blobOf('a'), table.get(new File(ROOT, path)));
+        }
+        assertNull(table.get(new File(ROOT, "dir0/f500")));
+    }
+
+    /** Returns a commit in the binary format with the IDs PARENT and
+     *  MERGEPARENT, conflicts, three files, and the deleted path DELETED.
+     */
+    private static byte[] mergeCommitBytes(String parent, String mergeParent,
+                                           String deleted) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write('C');
+        out.write(1);
+        out.write(1 | 2 | 4);
+        for (String id : new String[] {parent, mergeParent}) {
+            byte[] bytes = new byte[ObjectId.BYTES];
+            ObjectId.fromHex(id).write(bytes, 0);
+            out.writeBytes(bytes);
+        }
+        Delta.writeVarint(out, 3);
+        Delta.writeVarint(out, 1_000_000_000_000L);
+        Delta.writeString(out, "Merged other into master.");
+        Delta.writeString(out, "master");
+        Delta.writeVarint(out, 1);
+        Delta.writeString(out, deleted);
+        return out.toByteArray();
+    }
+
+    @Test
+    public void commitCodecRoundTrip() {
+        Commit c = new Commit(null, "initial commit \u00e9", "master");
+        byte[] bytes = c.encode();
+        assertFalse(Commit.isLegacy(bytes));
+        Commit d = Commit.decode(bytes);
+        assertEquals(c.message(), d.message());
+        assertEquals("master", d.branch());
+        assertEquals(c.time(), d.time());
+        assertEquals(0, d.size());
+        assertFalse(d.hasConflict());
+        assertNull(d.parentID());
+        assertNull(d.mergeParentID());
+        assertArrayEquals(bytes, d.encode());
+        assertEquals(c.id(), d.id());
+    }
+
+    @Test
+    public void commitDecodesHeaderFirst() {
+        byte[] bytes = mergeCommitBytes(ZEROS, ONES, "dir/gone.txt");
+        Commit c = Commit.decode(bytes);
+        assertEquals("Merged other into master.", c.message());
+        assertEquals("master", c.branch());
+        assertEquals(1_000_000_000_000L, c.time());
+        assertEquals(3, c.size());
+        assertTrue(c.hasConflict());
+        assertEquals(ONES, c.mergeParentID());
+        assertEquals(ZEROS, c.parentID());
+        assertArrayEquals(bytes, c.encode());
+        assertArrayEquals(bytes, Commit.decode(bytes).encode());
+    }
+
+    @Test
+    public void commitLegacyDetection() {
+        assertTrue(Commit.isLegacy(new byte[0]));
+        assertTrue(Commit.isLegacy(new byte[] {(byte) 0xac, (byte) 0xed}));
+        assertFalse(Commit.isLegacy(mergeCommitBytes(ONES, ZEROS, "a")));
+    }
+
+    @Test(expected = GitletException.class)
+    public void commitRejectsUnknownVersion() {
+        Commit.decode(new byte[] {'C', 9, 0});
+    }
+
+}
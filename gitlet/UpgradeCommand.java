@@ -0,0 +1,41 @@
+package gitlet;
+
+import static gitlet.Utils.gitletDir;
+
+/** Contains the logic needed to bring the storage of a repository
+ *  created by an older version of gitlet up to date. Every commit and
+ *  tree is read before anything is changed, and each step only moves or
+ *  rewrites what is still in an older format, so running it again after
+ *  it was cut short finishes the upgrade.
+ * @author Sam Stahl
+ */
+public class UpgradeCommand extends Command {
+
+    /** Initializes the command with ARGS to ensure there are no
+     *  other arguments.
+     */
+    UpgradeCommand(String[] args) {
+        if (!gitletDir().exists()) {
+            System.out.println("Not in an initialized Gitlet directory.");
+            setFailed();
+        } else if (args.length != 1) {
+            System.out.println("Incorrect operands.");
+            setFailed();
+        }
+    }
+
+    @Override
+    void execute() {
+        if (!failed()) {
+            Repository.current().checkObjects();
+            System.out.println("Compressed " + ObjectStore.migrate()
+                    + " blobs.");
+            System.out.println("Moved " + ObjectStore.shard()
+                    + " objects into subfolders.");
+            System.out.println("Rewrote "
+                    + Repository.current().upgradeCommits()
+                    + " commits in the binary format.");
+        }
+    }
+
+}
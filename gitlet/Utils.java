@@ -1,13 +1,18 @@
 package gitlet;
 
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FilenameFilter;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.ObjectStreamConstants;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 import java.nio.file.Files;
 import java.nio.file.Paths;
@@ -15,7 +20,6 @@ import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
-import java.util.Formatter;
 import java.util.List;
 
  /** Assorted utilities.
@@ -28,22 +32,34 @@ class Utils {
     /** A magic number that is the length of the SHA-1 IDs. */
     static final int ID_LENGTH = 40;
 
-    /** The current working directory. */
-    static final File CWD = new File(System.getProperty("user.dir"));
+    /** Returns the working directory of the running command. */
+    static File cwd() {
+        return Repository.current().dir();
+    }
 
-    /** The main directory for the Gitlet repository. */
-    static final File GITLET = Utils.join(CWD, ".gitlet");
+    /** Returns the main directory for the Gitlet repository of the
+     *  running command.
+     */
+    static File gitletDir() {
+        return Repository.current().gitletDir();
+    }
+
+    /** Returns the number of threads to spread parallel work over, which
+     *  is the number of processors unless set with -Dgitlet.threads.
+     */
+    static int threads() {
+        return Math.max(1, Integer.getInteger("gitlet.threads",
+                Runtime.getRuntime().availableProcessors()));
+    }
 
     /** Returns the name of the current head branch. */
     public static String getHeadBranch() {
-        File head = join(GITLET, "HEAD.txt");
-        return readContentsAsString(head);
+        return Repository.current().headBranch();
     }
 
     /** Returns the SHA-1 ID of the head commit of BRANCH. */
     public static String getHeadSha1(String branch) {
-        File headCommit = join(GITLET, "branches", branch + ".txt");
-        return readContentsAsString(headCommit);
+        return Repository.current().headID(branch);
     }
 
     /** Returns the SHA-1 ID of the head commit of the head branch. */
@@ -53,27 +69,17 @@ class Utils {
 
     /** Returns the head commit of given BRANCH. */
     public static Commit getHead(String branch) {
-        String c = getHeadSha1(branch);
-        File commit = join(GITLET, "commits", c + ".txt");
-        return readObject(commit, Commit.class);
+        return Repository.current().head(branch);
     }
 
     /** Returns the current head commit. */
     public static Commit getHead() {
-        return getHead(getHeadBranch());
+        return Repository.current().head();
     }
 
     /** Sets the head commit of BRANCH to C. */
     public static void setHead(Commit c, String branch) {
-        File headCommit = join(GITLET, "branches", branch + ".txt");
-        if (!headCommit.exists()) {
-            try {
-                headCommit.createNewFile();
-            } catch (IOException e) {
-                throw Utils.error(e.getMessage());
-            }
-        }
-        writeContents(headCommit, c.id());
+        Repository.current().setHead(c, branch);
     }
 
     /** Returns the file F's name without the .whatever extension.
@@ -92,52 +98,65 @@ class Utils {
 
     /** Returns true if branch B exists. */
     public static boolean branchExists(String b) {
-        File branch = join(GITLET, "branches", b + ".txt");
-        return branch.exists();
+        return Repository.current().branchExists(b);
     }
 
     /** Returns the commit object when given its full or shortened SHA-1 ID. */
     public static Commit getCommitByID(String id) {
         if (id.length() < ID_LENGTH) {
-            SHATraversal t = new SHATraversal(id);
-            t.traverse();
-            id = t.id();
+            id = CommitIndex.resolve(id);
             if (id == null) {
                 return null;
             }
         }
-        File f = join(GITLET, "commits", id + ".txt");
-        if (!f.exists()) {
-            return null;
-        }
-        return readObject(f, Commit.class);
+        return Repository.current().commits().get(id);
     }
 
-    /** Returns true if the contents of files A and B match. */
-    public static boolean contentsMatch(File a, File b) {
-        if ((a == null || !a.exists()) || (b == null || !b.exists())) {
-            return false;
+    /** Returns the full SHA-1 ID of the commit named by REV, which is
+     *  either a branch or a full or shortened commit ID, or null if
+     *  there is no such commit.
+     */
+    public static String resolveRevision(String rev) {
+        if (branchExists(rev)) {
+            return getHeadSha1(rev);
         }
-        return (readContentsAsString(a).equals(readContentsAsString(b)));
+        Commit c = getCommitByID(rev);
+        return c == null ? null : c.id();
     }
 
-    /** Returns true if F is untracked. */
-    public static boolean untracked(File f) {
-        if (f.equals(GITLET)) {
-            return false;
-        }
-        Stage s = new Stage();
-        Commit head = getHead();
-        File inStageAdd = join(GITLET, "stage", "add", f.getName());
-        File inStageRm = join(GITLET, "stage", "rm", f.getName());
-        return ((!s.getAddedFiles().contains(inStageAdd)
-                && head.getVersionOf(f) == null)
-            || (s.getRemovedFiles().contains(inStageRm)));
+    /** Returns true if the blobs with IDs A and B both exist and
+     *  hold the same contents.
+     */
+    public static boolean contentsMatch(String a, String b) {
+        return a != null && a.equals(b);
+    }
+
+    /** Returns the path of file F relative to the Current Working
+     *  Directory, with its components separated by slashes.
+     */
+    public static String relativePath(File f) {
+        return cwd().toPath().relativize(f.toPath()).toString()
+            .replace(File.separatorChar, '/');
     }
 
     /** Returns true if the Current Working Directory contains file F. */
     public static boolean cwdContains(File f) {
-        return Arrays.asList(CWD.listFiles()).contains(f);
+        return Repository.current().cwdContains(f);
+    }
+
+    /** Deletes file F, then each folder above it that is left empty, up
+     *  to the Current Working Directory. Returns true if F was deleted.
+     */
+    static boolean deleteAndPrune(File f) {
+        if (!f.delete()) {
+            return false;
+        }
+        for (File dir = f.getParentFile();
+             dir != null && !dir.equals(cwd()) && dir.delete();
+             dir = dir.getParentFile()) {
+            continue;
+        }
+        return true;
     }
 
     /* SHA-1 HASH VALUES. */
@@ -159,11 +178,7 @@ class Utils {
                     throw new IllegalArgumentException("improper type to sha1");
                 }
             }
-            Formatter result = new Formatter();
-            for (byte b : md.digest()) {
-                result.format("%02x", b);
-            }
-            return result.toString();
+            return ObjectId.read(md.digest(), 0).hex();
         } catch (NoSuchAlgorithmException excp) {
             throw new IllegalArgumentException("System does not support SHA-1");
         }
@@ -209,6 +224,7 @@ class Utils {
         if (!file.isFile()) {
             throw new IllegalArgumentException("must be a normal file");
         }
+        Repository.noteRead();
         try {
             return Files.readAllBytes(file.toPath());
         } catch (IOException excp) {
@@ -252,6 +268,7 @@ class Utils {
      *  Throws IllegalArgumentException in case of problems. */
     static <T extends Serializable> T readObject(File file,
                                                  Class<T> expectedClass) {
+        Repository.noteRead();
         try {
             ObjectInputStream in =
                 new ObjectInputStream(new FileInputStream(file));
@@ -334,6 +351,91 @@ class Utils {
 
 
 
+    /** Return an object of type T read from BYTES, casting it to
+     *  EXPECTEDCLASS.  Throws IllegalArgumentException in case of
+     *  problems. */
+    static <T extends Serializable> T deserialize(byte[] bytes,
+                                                  Class<T> expectedClass) {
+        try {
+            ObjectInputStream in =
+                new ObjectInputStream(new ByteArrayInputStream(bytes));
+            T result = expectedClass.cast(in.readObject());
+            in.close();
+            return result;
+        } catch (IOException | ClassCastException
+                 | ClassNotFoundException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Return an object of type T read from BYTES as deserialize does,
+     *  but accepting an EXPECTEDCLASS serialized by any version of that
+     *  class, whatever its serialVersionUID: each descriptor of
+     *  EXPECTEDCLASS read is replaced by one with the same fields and the
+     *  serialVersionUID of the local class, whose fields are then matched
+     *  by name.  Throws IllegalArgumentException in case of problems. */
+    static <T extends Serializable> T deserializeAnyVersion(
+            byte[] bytes, Class<T> expectedClass) {
+        long uid = ObjectStreamClass.lookup(expectedClass)
+            .getSerialVersionUID();
+        try {
+            ObjectInputStream in =
+                new ObjectInputStream(new ByteArrayInputStream(bytes)) {
+                    @Override
+                    protected ObjectStreamClass readClassDescriptor()
+                        throws IOException, ClassNotFoundException {
+                        ObjectStreamClass desc = super.readClassDescriptor();
+                        if (desc.getName().equals(expectedClass.getName())
+                            && desc.getSerialVersionUID() != uid) {
+                            return withUID(desc, uid);
+                        }
+                        return desc;
+                    }
+                };
+            T result = expectedClass.cast(in.readObject());
+            in.close();
+            return result;
+        } catch (IOException | ClassCastException
+                 | ClassNotFoundException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Returns a descriptor of the class DESC describes, with the fields
+     *  of DESC but the serialVersionUID UID. It is read back from a stream
+     *  holding only that descriptor, which is how descriptors are made.
+     *  The class must be one whose objects were written with its default
+     *  serialized form. */
+    private static ObjectStreamClass withUID(ObjectStreamClass desc,
+                                             long uid)
+        throws IOException, ClassNotFoundException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeShort(ObjectStreamConstants.STREAM_MAGIC);
+        out.writeShort(ObjectStreamConstants.STREAM_VERSION);
+        out.writeByte(ObjectStreamConstants.TC_CLASSDESC);
+        out.writeUTF(desc.getName());
+        out.writeLong(uid);
+        out.writeByte(ObjectStreamConstants.SC_SERIALIZABLE);
+        ObjectStreamField[] fields = desc.getFields();
+        out.writeShort(fields.length);
+        for (ObjectStreamField f : fields) {
+            out.writeByte(f.getTypeCode());
+            out.writeUTF(f.getName());
+            if (!f.isPrimitive()) {
+                out.writeByte(ObjectStreamConstants.TC_STRING);
+                out.writeUTF(f.getTypeString());
+            }
+        }
+        out.writeByte(ObjectStreamConstants.TC_ENDBLOCKDATA);
+        out.writeByte(ObjectStreamConstants.TC_NULL);
+        out.close();
+        ObjectInputStream in =
+            new ObjectInputStream(new ByteArrayInputStream(
+                    bytes.toByteArray()));
+        return (ObjectStreamClass) in.readObject();
+    }
+
     /* MESSAGES AND ERROR REPORTING */
 
     /** Return a GitletException whose message is composed from MSG and ARGS as